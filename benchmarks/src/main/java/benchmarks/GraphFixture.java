@@ -0,0 +1,78 @@
+package benchmarks;
+
+import graph.GraphGenerator;
+import graph.StateSpaceGraph;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Graph the benchmarks run over: one of the bundled DOT files, or a synthetic graph of the given
+ * size, branching, depth and cycle density, written by {@link GraphGenerator}. Bundled files are
+ * looked up in the directory given by the dot.dir system property, the repository's dot
+ * directory by default.
+ */
+@State(Scope.Benchmark)
+public class GraphFixture {
+
+    public static final String SYNTHETIC = "synthetic";
+
+    private static final String DOT_DIR = System.getProperty("dot.dir", "dot");
+    private static final String DOT_EXTENSION = ".dot";
+
+    // Graph: a bundled DOT file name, without extension, or SYNTHETIC
+    @Param({"simplifiedNoLC", "completeNoLC-clean", SYNTHETIC})
+    public String graph;
+
+    // Synthetic graphs only
+    @Param({"2000"})
+    public int nodes;
+
+    @Param({"2"})
+    public int branching;
+
+    @Param({"20"})
+    public int depth;
+
+    @Param({"0.3"})
+    public double cycles;
+
+    @Param({"42"})
+    public long seed;
+
+    public String file;
+    public StateSpaceGraph ssg;
+
+    private File synthetic;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (graph.equals(SYNTHETIC)) {
+            synthetic = File.createTempFile(SYNTHETIC, DOT_EXTENSION);
+            file = synthetic.getPath();
+            new GraphGenerator()
+                    .nodes(nodes)
+                    .outDegree(1, branching)
+                    .depth(depth)
+                    .cycleDensity(cycles)
+                    .seed(seed)
+                    .write(file);
+        } else {
+            file = new File(DOT_DIR, graph + DOT_EXTENSION).getPath();
+        }
+
+        ssg = new StateSpaceGraph(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (synthetic != null)
+            synthetic.delete();
+    }
+}
@@ -0,0 +1,41 @@
+package benchmarks;
+
+import graph.LoadOptions;
+import graph.StateSpaceGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph construction: scanning the DOT file, parsing the states and building the adjacency.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    @Benchmark
+    public StateSpaceGraph load(GraphFixture fixture) {
+        return new StateSpaceGraph(fixture.file);
+    }
+
+    @Benchmark
+    public StateSpaceGraph loadParallel(GraphFixture fixture) {
+        return new StateSpaceGraph(fixture.file, new LoadOptions().parallelism(PARALLELISM));
+    }
+
+    @Benchmark
+    public StateSpaceGraph loadLazy(GraphFixture fixture) {
+        return new StateSpaceGraph(fixture.file, new LoadOptions().lazyStates(1000));
+    }
+}
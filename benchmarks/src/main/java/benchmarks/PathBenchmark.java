@@ -0,0 +1,92 @@
+package benchmarks;
+
+import graph.Edge;
+import graph.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path generation over a loaded graph: the two BFS traversals (what pathsTo and pathsFrom used
+ * to build), path counting, enumeration, sampling, the deque-based getPaths and edge lookup.
+ * Traversals and counts are discarded before the benchmarks that time them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathBenchmark {
+
+    /**
+     * Sampled paths of the fixture graph.
+     */
+    @State(Scope.Benchmark)
+    public static class Paths {
+
+        @Param({"1000"})
+        public int numPaths;
+
+        List<Path> sample;
+
+        @Setup
+        public void setUp(GraphFixture fixture) {
+            sample = fixture.ssg.samplePaths(numPaths);
+        }
+    }
+
+    @Benchmark
+    public int traversals(GraphFixture fixture) {
+        int[] first = new int[1];
+        fixture.ssg.discardPathIndexes();
+        fixture.ssg.forEachPath((path, length) -> {
+            first[0] = length;
+            return false;
+        });
+        return first[0];
+    }
+
+    @Benchmark
+    public long countPaths(GraphFixture fixture) {
+        fixture.ssg.discardPathIndexes();
+        return fixture.ssg.getPathSampler().countPaths();
+    }
+
+    @Benchmark
+    public long forEachPath(GraphFixture fixture) {
+        long[] nodes = new long[1];
+        fixture.ssg.forEachPath((path, length) -> {
+            nodes[0] += length;
+            return true;
+        });
+        return nodes[0];
+    }
+
+    @Benchmark
+    public List<Path> samplePaths(GraphFixture fixture, Paths paths) {
+        return fixture.ssg.samplePaths(paths.numPaths);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public List<Deque<Integer>> getPaths(GraphFixture fixture, Paths paths) {
+        return fixture.ssg.getPaths(paths.numPaths);
+    }
+
+    @Benchmark
+    public Edge[][] getPathEdges(GraphFixture fixture, Paths paths) {
+        return fixture.ssg.getPathEdges(paths.sample);
+    }
+}
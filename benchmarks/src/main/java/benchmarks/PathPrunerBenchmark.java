@@ -0,0 +1,62 @@
+package benchmarks;
+
+import graph.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pruning.PathPruner;
+import pruning.PathSizeSampler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sampling of an already built path collection: every complete path of the fixture graph.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathPrunerBenchmark {
+
+    private static final long SEED = 42;
+
+    /**
+     * Complete paths of the fixture graph.
+     */
+    @State(Scope.Benchmark)
+    public static class Paths {
+
+        @Param({"1000"})
+        public int samples;
+
+        List<Path> all;
+
+        @Setup
+        public void setUp(GraphFixture fixture) {
+            all = new ArrayList<>();
+            fixture.ssg.paths().forEach(all::add);
+        }
+    }
+
+    @Benchmark
+    public List<Path> sample(Paths paths) {
+        return PathPruner.samplePaths(paths.all, paths.samples, new SplittableRandom(SEED));
+    }
+
+    @Benchmark
+    public PathSizeSampler buildSampler(Paths paths) {
+        return new PathSizeSampler(paths.all);
+    }
+}
@@ -0,0 +1,272 @@
+package graph;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Every complete path of the graph, stored with shared prefixes and suffixes. A path is the
+ * forward BFS tree path up to a node (parent pointers) followed by a suffix, and suffixes form a
+ * trie towards the super sink: a suffix is a node plus a pointer to the rest of the suffix. Each
+ * path and each suffix thus takes O(1) memory; paths are materialised when they are read.
+ * <p>
+ * The paths and their order are those of the path index: first the paths the forward BFS
+ * completes, then the completions of each incomplete path. The number of suffixes each segment
+ * creates, and the number of completions of each incomplete path, are counted first: the trie
+ * and the path columns can then be filled in parallel, each task writing its own part of them,
+ * so the result does not depend on the parallelism.
+ */
+final class CompletePaths extends AbstractList<Path> implements RandomAccess {
+
+    private static final int NONE = -1;
+    private static final int SINK_SUFFIX = 0;
+
+    // Parallel work: tasks per worker, to even out ranges with much more output
+    private static final int TASKS_PER_WORKER = 4;
+
+    // Exceptions
+    private static final String BAD_PARALLELISM = "Parallelism must be positive: %d.";
+
+    private final PathIndex index;
+
+    // Suffix trie: suffix 0 is the super sink, every other suffix a node and the rest of it
+    private final int[] suffixNode;
+    private final int[] suffixNext;
+    private final int[] suffixSize;
+    private final int[] segFirst;       // first suffix created by each segment
+    private final int[] segCount;       // number of suffixes created by each segment
+
+    // Complete paths: BFS tree node up to which the path goes, then its suffix
+    private final int[] pathPrefix;
+    private final int[] pathSuffix;
+
+    /**
+     * Builds the suffixes of every node and lists the complete paths.
+     *
+     * @param index path index.
+     */
+    CompletePaths(PathIndex index) {
+        this(index, 1);
+    }
+
+    /**
+     * Builds the suffixes of every node and lists the complete paths, filling the suffix trie
+     * and completing the incomplete paths on a fork/join pool.
+     *
+     * @param index       path index.
+     * @param parallelism number of workers; 1 builds everything in the calling thread.
+     */
+    CompletePaths(PathIndex index, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException(String.format(BAD_PARALLELISM, parallelism));
+
+        this.index = index;
+        int numSegments = index.segChild.length;
+        segFirst = new int[numSegments];
+        segCount = new int[numSegments];
+
+        // Suffixes each segment creates, and where they go: the child's suffixes at that moment
+        // (the suffixes of its first segPrefix segments), plus the super sink itself
+        int[] segBefore = new int[numSegments];  // suffixes of the owner's earlier segments
+        int[] creationStart = new int[numSegments + 1];
+        int numSuffixes = 1;
+        for (int c = 0; c < numSegments; c++) {
+            int slot = index.segCreation[c];
+            int child = index.segChild[slot];
+            int covered = index.segPrefix[slot];
+            int count = child == index.finalState ? 1 : 0;
+            if (covered > 0) {
+                int last = index.segStart[child] + covered - 1;
+                count = Math.addExact(count, Math.addExact(segBefore[last], segCount[last]));
+            }
+
+            int owner = index.segOwner[slot];
+            if (slot > index.segStart[owner])
+                segBefore[slot] = segBefore[slot - 1] + segCount[slot - 1];
+            segCount[slot] = count;
+            segFirst[slot] = numSuffixes;
+            creationStart[c] = numSuffixes;
+            numSuffixes = Math.addExact(numSuffixes, count);
+        }
+        creationStart[numSegments] = numSuffixes;
+
+        suffixNode = new int[numSuffixes];
+        suffixNext = new int[numSuffixes];
+        suffixSize = new int[numSuffixes];
+        suffixNode[SINK_SUFFIX] = index.finalState;
+        suffixNext[SINK_SUFFIX] = NONE;
+
+        // Paths: BFS completes, then every suffix of each incomplete path's last node
+        int numCuts = index.cutTo.length;
+        int[] cutStart = new int[numCuts + 1];
+        cutStart[0] = index.completes.length;
+        for (int cut = 0; cut < numCuts; cut++)
+            cutStart[cut + 1] = Math.addExact(cutStart[cut], countSuffixes(index.cutTo[cut]));
+
+        pathPrefix = new int[cutStart[numCuts]];
+        pathSuffix = new int[cutStart[numCuts]];
+        for (int path = 0; path < index.completes.length; path++) {
+            pathPrefix[path] = index.completes[path];
+            pathSuffix[path] = SINK_SUFFIX;
+        }
+
+        if (parallelism == 1) {
+            fillSuffixes(0, numSegments);
+            complete(cutStart, 0, numCuts);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                inRanges(pool, creationStart, parallelism, this::fillSuffixes);
+                inRanges(pool, cutStart, parallelism, (from, to) -> complete(cutStart, from, to));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        // A suffix always comes after the rest of it
+        suffixSize[SINK_SUFFIX] = 1;
+        for (int suffix = 1; suffix < numSuffixes; suffix++)
+            suffixSize[suffix] = suffixSize[suffixNext[suffix]] + 1;
+    }
+
+    /**
+     * Fills the suffixes created by a range of segments, in creation order. Each segment writes
+     * only to its own suffixes, whose positions are known up front.
+     *
+     * @param from first segment, in creation order.
+     * @param to   segment following the last one (exclusive).
+     */
+    private void fillSuffixes(int from, int to) {
+        for (int c = from; c < to; c++) {
+            int slot = index.segCreation[c];
+            int owner = index.segOwner[slot];
+            int child = index.segChild[slot];
+            int at = segFirst[slot];
+
+            for (int s = index.segStart[child]; s < index.segStart[child] + index.segPrefix[slot]; s++)
+                for (int suffix = segFirst[s]; suffix < segFirst[s] + segCount[s]; suffix++) {
+                    suffixNode[at] = owner;
+                    suffixNext[at++] = suffix;
+                }
+            if (child == index.finalState) {
+                suffixNode[at] = owner;
+                suffixNext[at] = SINK_SUFFIX;
+            }
+        }
+    }
+
+    /**
+     * Completes a range of incomplete paths with every suffix of their last node.
+     *
+     * @param cutStart position of the first completion of each incomplete path.
+     * @param from     first incomplete path.
+     * @param to       incomplete path following the last one (exclusive).
+     */
+    private void complete(int[] cutStart, int from, int to) {
+        for (int cut = from; cut < to; cut++) {
+            int child = index.cutTo[cut];
+            int path = cutStart[cut];
+            for (int s = index.segStart[child]; s < index.segStart[child + 1]; s++)
+                for (int suffix = segFirst[s]; suffix < segFirst[s] + segCount[s]; suffix++) {
+                    pathPrefix[path] = index.cutFrom[cut];
+                    pathSuffix[path++] = suffix;
+                }
+        }
+    }
+
+    /**
+     * Runs a task over ranges of items on a fork/join pool. The ranges hold about the same
+     * amount of output; each task writes only to the positions of its own range.
+     *
+     * @param pool        fork/join pool.
+     * @param starts      output position of each item, then the end of the output.
+     * @param parallelism number of workers.
+     * @param task        task filling a range of items.
+     */
+    private static void inRanges(ForkJoinPool pool, int[] starts, int parallelism,
+                                 RangeTask task) {
+        int numItems = starts.length - 1;
+        int numTasks = Math.max(1, Math.min(numItems, parallelism * TASKS_PER_WORKER));
+        long first = starts[0];
+        long output = starts[numItems] - first;
+
+        List<Callable<Void>> tasks = new ArrayList<>(numTasks);
+        int from = 0;
+        for (int t = 1; t <= numTasks && from < numItems; t++) {
+            // Last item of the range: the one reaching the task's share of the output
+            long target = first + output * t / numTasks;
+            int to = from + 1;
+            while (to < numItems && starts[to] < target)
+                to++;
+
+            int start = from, end = t == numTasks ? numItems : to;
+            tasks.add(() -> {
+                task.fill(start, end);
+                return null;
+            });
+            from = end;
+        }
+
+        try {
+            for (Future<Void> result : pool.invokeAll(tasks))
+                result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Work over a range of items.
+     */
+    @FunctionalInterface
+    private interface RangeTask {
+        void fill(int from, int to);
+    }
+
+    /**
+     * Materialises a complete path.
+     *
+     * @param i path position.
+     * @return path, from the initial state to the super sink node.
+     */
+    @Override
+    public Path get(int i) {
+        int[] nodes = new int[pathSize(i)];
+        int at = index.prefix(pathPrefix[i], nodes);
+        for (int suffix = pathSuffix[i]; suffix != NONE; suffix = suffixNext[suffix])
+            nodes[at++] = suffixNode[suffix];
+        return Path.wrap(nodes);
+    }
+
+    @Override
+    public int size() {
+        return pathPrefix.length;
+    }
+
+    /**
+     * Returns the number of nodes of a complete path, without materialising it.
+     *
+     * @param i path position.
+     * @return path size.
+     */
+    int pathSize(int i) {
+        return index.depth[pathPrefix[i]] + suffixSize[pathSuffix[i]];
+    }
+
+    private int countSuffixes(int node) {
+        int count = 0;
+        for (int s = index.segStart[node]; s < index.segStart[node + 1]; s++)
+            count = Math.addExact(count, segCount[s]);
+        return count;
+    }
+}
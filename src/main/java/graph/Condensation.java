@@ -0,0 +1,229 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of a graph and the DAG they condense it into. Components are
+ * found by an iterative Tarjan search from node 0 on, following edges in adjacency order, and
+ * numbered in topological order: every edge between two components goes to a higher number.
+ * <p>
+ * The search also numbers the nodes in DFS post-order. Within a component, an edge going to a
+ * node finished later than its source (a DFS back edge, self-loops included) closes a cycle; the
+ * other edges of the component form a DAG. These feedback edges are the ones
+ * {@link UnrolledPaths} bounds.
+ */
+public final class Condensation {
+
+    private static final int NONE = -1;
+
+    private final int[] component;      // component of each node
+    private final int[] post;           // DFS post-order number of each node
+    private final int[] members;        // nodes by component, each component in post-order
+    private final int[] memberStart;    // position of each component's first member, then the end
+    private final boolean[] cyclic;     // whether each component holds a cycle
+    private final CsrAdjacency dag;     // distinct edges between components
+
+    /**
+     * Finds the components of a graph.
+     *
+     * @param outgoing outgoing adjacency.
+     */
+    Condensation(CsrAdjacency outgoing) {
+        int numNodes = outgoing.numNodes();
+        component = new int[numNodes];
+        post = new int[numNodes];
+
+        // Tarjan: components come out in reverse topological order
+        int[] order = new int[numNodes];        // discovery number, + 1; 0 if not visited
+        int[] low = new int[numNodes];
+        int[] stack = new int[numNodes];        // nodes of the components being built
+        boolean[] onStack = new boolean[numNodes];
+        int[] callNode = new int[numNodes];     // DFS call stack: node and next slot
+        int[] callSlot = new int[numNodes];
+        int[] postOrder = new int[numNodes];    // node of each post-order number
+        int visited = 0, finished = 0, top = 0, numComponents = 0;
+
+        for (int root = 0; root < numNodes; root++) {
+            if (order[root] != 0)
+                continue;
+
+            int depth = 0;
+            callNode[0] = root;
+            callSlot[0] = outgoing.start(root);
+            order[root] = low[root] = ++visited;
+            stack[top++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int node = callNode[depth];
+                int slot = callSlot[depth];
+
+                if (slot < outgoing.end(node)) {
+                    callSlot[depth]++;
+                    int next = outgoing.target(slot);
+                    if (order[next] == 0) {
+                        order[next] = low[next] = ++visited;
+                        stack[top++] = next;
+                        onStack[next] = true;
+                        depth++;
+                        callNode[depth] = next;
+                        callSlot[depth] = outgoing.start(next);
+                    } else if (onStack[next]) {
+                        low[node] = Math.min(low[node], order[next]);
+                    }
+                    continue;
+                }
+
+                // Node finished: it closes a component if nothing below reaches higher
+                post[node] = finished;
+                postOrder[finished++] = node;
+                if (low[node] == order[node]) {
+                    int member;
+                    do {
+                        member = stack[--top];
+                        onStack[member] = false;
+                        component[member] = numComponents;
+                    } while (member != node);
+                    numComponents++;
+                }
+
+                depth--;
+                if (depth >= 0)
+                    low[callNode[depth]] = Math.min(low[callNode[depth]], low[node]);
+            }
+        }
+
+        // Topological numbering
+        for (int v = 0; v < numNodes; v++)
+            component[v] = numComponents - 1 - component[v];
+
+        memberStart = new int[numComponents + 1];
+        for (int v = 0; v < numNodes; v++)
+            memberStart[component[v] + 1]++;
+        for (int c = 0; c < numComponents; c++)
+            memberStart[c + 1] += memberStart[c];
+
+        int[] next = Arrays.copyOf(memberStart, numComponents);
+        members = new int[numNodes];
+        for (int p = 0; p < numNodes; p++)
+            members[next[component[postOrder[p]]]++] = postOrder[p];
+
+        // Cycles and edges between components
+        cyclic = new boolean[numComponents];
+        int[] from = new int[outgoing.targets().length];
+        int[] to = new int[from.length];
+        int[] lastTarget = new int[numComponents];
+        Arrays.fill(lastTarget, NONE);
+        int numEdges = 0;
+        for (int c = 0; c < numComponents; c++) {
+            cyclic[c] = memberStart[c + 1] - memberStart[c] > 1;
+            for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+                int node = members[m];
+                for (int slot = outgoing.start(node); slot < outgoing.end(node); slot++) {
+                    int target = component[outgoing.target(slot)];
+                    if (target == c) {
+                        cyclic[c] |= outgoing.target(slot) == node;
+                    } else if (lastTarget[target] != c) {
+                        lastTarget[target] = c;
+                        from[numEdges] = c;
+                        to[numEdges++] = target;
+                    }
+                }
+            }
+        }
+        dag = CsrAdjacency.build(numComponents, numEdges, from, to);
+    }
+
+    /**
+     * Returns the number of components.
+     *
+     * @return number of components.
+     */
+    public int numComponents() {
+        return cyclic.length;
+    }
+
+    /**
+     * Returns the component of a node.
+     *
+     * @param node node index.
+     * @return component, in topological order.
+     */
+    public int component(int node) {
+        return component[node];
+    }
+
+    /**
+     * Returns the nodes of a component, in DFS post-order.
+     *
+     * @param c component.
+     * @return component nodes.
+     */
+    public int[] nodes(int c) {
+        return Arrays.copyOfRange(members, memberStart[c], memberStart[c + 1]);
+    }
+
+    /**
+     * Returns the number of nodes of a component.
+     *
+     * @param c component.
+     * @return component size.
+     */
+    public int size(int c) {
+        return memberStart[c + 1] - memberStart[c];
+    }
+
+    /**
+     * Checks whether a component holds a cycle: it has more than one node, or a self-loop.
+     *
+     * @param c component.
+     * @return true if paths can loop inside the component; false otherwise.
+     */
+    public boolean isCyclic(int c) {
+        return cyclic[c];
+    }
+
+    /**
+     * Returns the components an edge leads to from a component, i.e. its successors in the
+     * condensed DAG.
+     *
+     * @param c component.
+     * @return successor components, each once.
+     */
+    public int[] successors(int c) {
+        int[] successors = new int[dag.degree(c)];
+        for (int slot = dag.start(c); slot < dag.end(c); slot++)
+            successors[slot - dag.start(c)] = dag.target(slot);
+        return successors;
+    }
+
+    /**
+     * Checks whether an edge between two nodes of the same component closes a cycle.
+     *
+     * @param src source node.
+     * @param dst destination node, in the source's component.
+     * @return true for DFS back edges and self-loops; false otherwise.
+     */
+    boolean isFeedback(int src, int dst) {
+        return post[dst] >= post[src];
+    }
+
+    /**
+     * Returns the nodes of every component, component after component, each in post-order.
+     *
+     * @return component members.
+     */
+    int[] members() {
+        return members;
+    }
+
+    /**
+     * Returns the position of a component's first node in {@link #members()}.
+     *
+     * @param c component, or the number of components for the end of the last one.
+     * @return member position.
+     */
+    int memberStart(int c) {
+        return memberStart[c];
+    }
+}
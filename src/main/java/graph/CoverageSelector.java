@@ -0,0 +1,350 @@
+package graph;
+
+import metrics.Metrics;
+import metrics.Metrics.Phase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects few paths that together cover as many edges, transitions and transition variants
+ * (transition and parameters) as possible. Paths are picked greedily by marginal coverage: each
+ * pick is the candidate covering the most targets not covered yet. Gains only shrink as targets
+ * get covered, so candidates are kept in a priority queue by their last known gain and only the
+ * top one is recounted (lazy greedy).
+ * <p>
+ * A path covers the edges between its consecutive nodes, parallel edges included: each of them
+ * can be taken when the path is turned into transitions (see
+ * {@link StateSpaceGraph#pathEdgeVariants(Path)}). Edges to the super sink cover nothing. The
+ * targets of each candidate are kept as a list of ids; covered targets are a bitset.
+ * <p>
+ * The selector reflects the graph when it was created: create another after a refresh.
+ */
+public final class CoverageSelector {
+
+    /**
+     * Kinds of targets to cover.
+     */
+    public enum Target {
+        EDGES,          // every edge of the DOT file
+        TRANSITIONS,    // every transition name
+        VARIANTS        // every transition with each of its parameter tuples
+    }
+
+    // Exceptions
+    private static final String NO_TARGETS = "At least one coverage target is needed.";
+    private static final String BAD_MAX_PATHS = "Maximum number of paths must be positive: %d.";
+
+    private final StateSpaceGraph graph;
+    private final EdgeIndex edgeIndex;
+    private final int finalState;
+
+    // Targets of each edge: edge e covers [targetStart[e], targetStart[e + 1]) of edgeTargets
+    private final int[] targetStart;
+    private final int[] edgeTargets;
+    private final int numIds;           // target ids are within [0, numIds)
+    private final int numTargets;       // targets some edge covers
+
+    /**
+     * Creates a selector of the given graph.
+     *
+     * @param graph   state space graph.
+     * @param targets kinds of targets to cover.
+     */
+    public CoverageSelector(StateSpaceGraph graph, Set<Target> targets) {
+        if (targets.isEmpty())
+            throw new IllegalArgumentException(NO_TARGETS);
+
+        this.graph = graph;
+        edgeIndex = graph.edgeIndex();
+        finalState = graph.finalState();
+        Edge[] edges = graph.edges();
+        int[] transitions = graph.edgeTransitions();
+        int[] tuples = graph.edgeTuples();
+
+        // Ids: edges, then transitions, then variants in order of first appearance
+        int[] variants = new int[edges.length];
+        Map<Long, Integer> variantIds = new HashMap<>();
+        BitSet usedTransitions = new BitSet();
+        int numEdges = 0;
+        for (int e = 0; e < edges.length; e++) {
+            if (edges[e].getDst() == finalState)
+                continue;
+
+            numEdges++;
+            usedTransitions.set(transitions[e]);
+            long variant = (long) transitions[e] << 32 | tuples[e];
+            variants[e] = variantIds.computeIfAbsent(variant, v -> variantIds.size());
+        }
+
+        boolean coverEdges = targets.contains(Target.EDGES);
+        boolean coverTransitions = targets.contains(Target.TRANSITIONS);
+        boolean coverVariants = targets.contains(Target.VARIANTS);
+        int transitionBase = coverEdges ? edges.length : 0;
+        int variantBase = transitionBase + (coverTransitions ? usedTransitions.length() : 0);
+        numIds = variantBase + (coverVariants ? variantIds.size() : 0);
+        numTargets = (coverEdges ? numEdges : 0)
+                + (coverTransitions ? usedTransitions.cardinality() : 0)
+                + (coverVariants ? variantIds.size() : 0);
+
+        targetStart = new int[edges.length + 1];
+        PathIndex.IntList ids = new PathIndex.IntList();
+        for (int e = 0; e < edges.length; e++) {
+            if (edges[e].getDst() != finalState) {
+                if (coverEdges)
+                    ids.add(e);
+                if (coverTransitions)
+                    ids.add(transitionBase + transitions[e]);
+                if (coverVariants)
+                    ids.add(variantBase + variants[e]);
+            }
+            targetStart[e + 1] = ids.size();
+        }
+        edgeTargets = ids.toArray();
+    }
+
+    /**
+     * Returns the number of targets the graph's edges cover.
+     *
+     * @return number of targets.
+     */
+    public int numTargets() {
+        return numTargets;
+    }
+
+    /**
+     * Counts the targets covered by a path collection.
+     *
+     * @param paths path collection.
+     * @return number of covered targets.
+     */
+    public int countCovered(List<Path> paths) {
+        Candidates candidates = new Candidates();
+        for (Path path : paths)
+            candidates.add(path.toArray(), path.size());
+
+        BitSet covered = new BitSet(numIds);
+        for (int c = 0; c < candidates.size(); c++)
+            for (int t = candidates.start(c); t < candidates.start(c + 1); t++)
+                covered.set(candidates.targets.get(t));
+        return covered.cardinality();
+    }
+
+    /**
+     * Selects paths from the given candidates, e.g. a sample, until the selection covers every
+     * target the candidates cover or holds the maximum number of paths.
+     *
+     * @param candidates candidate paths.
+     * @param maxPaths   maximum number of paths to select.
+     * @return selected paths, in order of selection: each covers the most new targets.
+     */
+    public List<Path> select(List<Path> candidates, int maxPaths) {
+        Metrics.Timer selection = graph.getMetrics().time(Phase.SELECTION);
+        try (selection) {
+            Candidates pool = new Candidates();
+            for (Path path : candidates)
+                pool.add(path.toArray(), path.size());
+
+            List<Path> selected = new ArrayList<>();
+            for (int c : pool.select(maxPaths))
+                selected.add(candidates.get(c));
+            return selected;
+        }
+    }
+
+    /**
+     * Selects paths from every complete path of the graph, until the selection covers every
+     * target or holds the maximum number of paths. The paths are enumerated twice: once to
+     * gather their targets, once to read the selected ones.
+     *
+     * @param maxPaths maximum number of paths to select.
+     * @return selected paths, in order of selection: each covers the most new targets.
+     */
+    public List<Path> selectFromAll(int maxPaths) {
+        Candidates pool = new Candidates();
+        graph.forEachPath((path, length) -> {
+            pool.add(path, length);
+            return true;
+        });
+
+        int[] picks;
+        Metrics.Timer selection = graph.getMetrics().time(Phase.SELECTION);
+        try (selection) {
+            picks = pool.select(maxPaths);
+        }
+
+        Map<Integer, Integer> rank = new HashMap<>();
+        for (int i = 0; i < picks.length; i++)
+            rank.put(picks[i], i);
+
+        Path[] selected = new Path[picks.length];
+        int[] position = {0};
+        int[] left = {picks.length};
+        if (left[0] > 0) {
+            graph.forEachPath((path, length) -> {
+                Integer at = rank.get(position[0]++);
+                if (at != null) {
+                    selected[at] = Path.wrap(Arrays.copyOf(path, length));
+                    left[0]--;
+                }
+                return left[0] > 0;
+            });
+        }
+        return Arrays.asList(selected);
+    }
+
+    /**
+     * Targets of each candidate path, without repetitions.
+     */
+    private final class Candidates {
+
+        private final PathIndex.IntList targets = new PathIndex.IntList();
+        private final PathIndex.IntList starts = new PathIndex.IntList();
+        private final int[] stamp = new int[numIds];    // last candidate holding each target, + 1
+
+        Candidates() {
+            starts.add(0);
+        }
+
+        void add(int[] path, int length) {
+            int mark = starts.size();
+            for (int i = 0; i + 1 < length; i++) {
+                if (path[i + 1] == finalState)
+                    continue;
+
+                for (int e = edgeIndex.get(path[i], path[i + 1]); e != EdgeIndex.NONE;
+                     e = edgeIndex.previous(e)) {
+                    for (int t = targetStart[e]; t < targetStart[e + 1]; t++) {
+                        int target = edgeTargets[t];
+                        if (stamp[target] != mark) {
+                            stamp[target] = mark;
+                            targets.add(target);
+                        }
+                    }
+                }
+            }
+            starts.add(targets.size());
+        }
+
+        int size() {
+            return starts.size() - 1;
+        }
+
+        int start(int candidate) {
+            return starts.get(candidate);
+        }
+
+        /**
+         * Picks candidates greedily by marginal coverage, recounting only the top of the queue.
+         * Ties go to the earliest candidate.
+         *
+         * @param maxPaths maximum number of candidates to pick.
+         * @return picked candidates, in order of selection.
+         */
+        int[] select(int maxPaths) {
+            if (maxPaths < 1)
+                throw new IllegalArgumentException(String.format(BAD_MAX_PATHS, maxPaths));
+
+            long[] gains = new long[size()];
+            int numGains = 0;
+            for (int c = 0; c < size(); c++)
+                if (start(c + 1) > start(c))
+                    gains[numGains++] = key(start(c + 1) - start(c), c);
+            GainQueue queue = new GainQueue(gains, numGains);
+
+            BitSet covered = new BitSet(numIds);
+            PathIndex.IntList picks = new PathIndex.IntList();
+            while (picks.size() < maxPaths && !queue.isEmpty()) {
+                int candidate = candidateOf(queue.poll());
+                int gain = 0;
+                for (int t = start(candidate); t < start(candidate + 1); t++)
+                    if (!covered.get(targets.get(t)))
+                        gain++;
+                if (gain == 0)
+                    continue;
+
+                // Other gains can only have dropped since queued: an up-to-date top is the best
+                if (!queue.isEmpty() && key(gain, candidate) < queue.peek()) {
+                    queue.add(key(gain, candidate));
+                    continue;
+                }
+
+                for (int t = start(candidate); t < start(candidate + 1); t++)
+                    covered.set(targets.get(t));
+                picks.add(candidate);
+            }
+            return picks.toArray();
+        }
+    }
+
+    /**
+     * Orders candidates by gain, then by position: larger gains first, earlier candidates first.
+     */
+    private static long key(int gain, int candidate) {
+        return (long) gain << 32 | (Integer.MAX_VALUE - candidate);
+    }
+
+    private static int candidateOf(long key) {
+        return Integer.MAX_VALUE - (int) key;
+    }
+
+    /**
+     * Binary max-heap of candidate keys.
+     */
+    private static final class GainQueue {
+
+        private long[] heap;
+        private int size;
+
+        GainQueue(long[] keys, int size) {
+            this.heap = keys;
+            this.size = size;
+            for (int i = size / 2 - 1; i >= 0; i--)
+                siftDown(i);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        long poll() {
+            long top = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+            return top;
+        }
+
+        void add(long key) {
+            if (size == heap.length)
+                heap = Arrays.copyOf(heap, Math.max(1, size * 2));
+            int i = size++;
+            while (i > 0 && heap[(i - 1) / 2] < key) {
+                heap[i] = heap[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            heap[i] = key;
+        }
+
+        private void siftDown(int i) {
+            long key = heap[i];
+            for (int child = 2 * i + 1; child < size; child = 2 * i + 1) {
+                if (child + 1 < size && heap[child + 1] > heap[child])
+                    child++;
+                if (heap[child] <= key)
+                    break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = key;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package graph;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Frozen adjacency in compressed-sparse-row form. The slots of node v are the positions
+ * [start(v), end(v)); each slot holds the node at the other end of the edge and the edge id,
+ * i.e. the edge's index in the graph's edge table.
+ */
+final class CsrAdjacency {
+
+    private final int[] offsets;    // slot range of every node (numNodes + 1 entries)
+    private final int[] targets;    // node at the other end of each slot
+    private final int[] edgeIds;    // edge id of each slot
+
+    private CsrAdjacency(int[] offsets, int[] targets, int[] edgeIds) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.edgeIds = edgeIds;
+    }
+
+    /**
+     * Wraps already built adjacency arrays.
+     *
+     * @param offsets slot range of every node (numNodes + 1 entries).
+     * @param targets node at the other end of each slot.
+     * @param edgeIds edge id of each slot.
+     * @return frozen adjacency.
+     */
+    static CsrAdjacency of(int[] offsets, int[] targets, int[] edgeIds) {
+        return new CsrAdjacency(offsets, targets, edgeIds);
+    }
+
+    /**
+     * Builds the adjacency of the edges (from[i], to[i]), grouped by their from node. Edges of
+     * the same node keep the order of their ids.
+     *
+     * @param numNodes number of nodes in the graph.
+     * @param numEdges number of edges to take from the given columns.
+     * @param from     node owning each edge's slot.
+     * @param to       node stored in each edge's slot.
+     * @return frozen adjacency.
+     */
+    static CsrAdjacency build(int numNodes, int numEdges, int[] from, int[] to) {
+        int[] offsets = new int[numNodes + 1];
+        for (int e = 0; e < numEdges; e++)
+            offsets[from[e] + 1]++;
+
+        for (int v = 0; v < numNodes; v++)
+            offsets[v + 1] += offsets[v];
+
+        int[] next = new int[numNodes];
+        System.arraycopy(offsets, 0, next, 0, numNodes);
+
+        int[] targets = new int[numEdges];
+        int[] edgeIds = new int[numEdges];
+        int slot;
+        for (int e = 0; e < numEdges; e++) {
+            slot = next[from[e]]++;
+            targets[slot] = to[e];
+            edgeIds[slot] = e;
+        }
+
+        return new CsrAdjacency(offsets, targets, edgeIds);
+    }
+
+    /**
+     * Builds the adjacency of a larger graph: the nodes of this one, possibly renumbered, plus
+     * new nodes and the new edges (from[i], to[i]), whose ids follow the existing ones. Slots are
+     * copied node by node, so the edges of a node still keep the order of their ids.
+     *
+     * @param numNodes  number of nodes in the larger graph.
+     * @param renumber  index of each existing node in the larger graph.
+     * @param firstEdge edge id of the first new edge.
+     * @param from      node owning each new edge's slot.
+     * @param to        node stored in each new edge's slot.
+     * @return frozen adjacency.
+     */
+    CsrAdjacency extend(int numNodes, IntUnaryOperator renumber, int firstEdge, int[] from,
+                        int[] to) {
+        int oldNodes = numNodes();
+        int[] renumbered = new int[oldNodes];
+        int[] offsets = new int[numNodes + 1];
+        for (int v = 0; v < oldNodes; v++) {
+            renumbered[v] = renumber.applyAsInt(v);
+            offsets[renumbered[v] + 1] += degree(v);
+        }
+        for (int node : from)
+            offsets[node + 1]++;
+
+        for (int v = 0; v < numNodes; v++)
+            offsets[v + 1] += offsets[v];
+
+        int[] next = new int[numNodes];
+        System.arraycopy(offsets, 0, next, 0, numNodes);
+
+        int[] targets = new int[offsets[numNodes]];
+        int[] edgeIds = new int[offsets[numNodes]];
+        for (int v = 0; v < oldNodes; v++) {
+            int slot = next[renumbered[v]];
+            System.arraycopy(this.edgeIds, start(v), edgeIds, slot, degree(v));
+            for (int s = start(v); s < end(v); s++)
+                targets[slot++] = renumbered[this.targets[s]];
+            next[renumbered[v]] = slot;
+        }
+
+        int slot;
+        for (int e = 0; e < from.length; e++) {
+            slot = next[from[e]]++;
+            targets[slot] = to[e];
+            edgeIds[slot] = firstEdge + e;
+        }
+
+        return new CsrAdjacency(offsets, targets, edgeIds);
+    }
+
+    /**
+     * Returns the first slot of the given node.
+     *
+     * @param node node index.
+     * @return first slot.
+     */
+    int start(int node) {
+        return offsets[node];
+    }
+
+    /**
+     * Returns the slot following the last slot of the given node.
+     *
+     * @param node node index.
+     * @return end slot (exclusive).
+     */
+    int end(int node) {
+        return offsets[node + 1];
+    }
+
+    /**
+     * Returns the number of slots of the given node.
+     *
+     * @param node node index.
+     * @return node degree.
+     */
+    int degree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    /**
+     * Returns the node stored in the given slot.
+     *
+     * @param slot adjacency slot.
+     * @return node index.
+     */
+    int target(int slot) {
+        return targets[slot];
+    }
+
+    /**
+     * Returns the edge id stored in the given slot.
+     *
+     * @param slot adjacency slot.
+     * @return edge id.
+     */
+    int edge(int slot) {
+        return edgeIds[slot];
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] targets() {
+        return targets;
+    }
+
+    int[] edgeIds() {
+        return edgeIds;
+    }
+
+    /**
+     * Returns the number of nodes covered by the adjacency.
+     *
+     * @return number of nodes.
+     */
+    int numNodes() {
+        return offsets.length - 1;
+    }
+}
@@ -0,0 +1,156 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * BFS distances of every node from the initial state and to the super sink, in edges. Nodes the
+ * initial state does not reach, and nodes that reach no final state (dead ends), are marked
+ * unreachable. A complete path through a node has at least fromInitial + toSink edges.
+ * <p>
+ * Adding edges only shortens distances, so the index of a graph that grew is updated in place
+ * from the new edges, in time proportional to the nodes whose distance changes.
+ */
+final class DistanceIndex {
+
+    static final int UNREACHABLE = -1;
+
+    final int[] fromInitial;    // edges from the initial state
+    final int[] toSink;         // edges to the super sink, one more than to the nearest final state
+
+    private DistanceIndex(int[] fromInitial, int[] toSink) {
+        this.fromInitial = fromInitial;
+        this.toSink = toSink;
+    }
+
+    /**
+     * Runs a forward BFS from the initial state and a backward one from the super sink.
+     *
+     * @param outgoing   outgoing adjacency.
+     * @param incoming   incoming adjacency.
+     * @param initial    initial state index.
+     * @param finalState super sink index.
+     * @return distance index.
+     */
+    static DistanceIndex build(CsrAdjacency outgoing, CsrAdjacency incoming, int initial,
+                               int finalState) {
+        int[] fifo = new int[outgoing.numNodes()];
+        return new DistanceIndex(distances(outgoing, initial, fifo),
+                distances(incoming, finalState, fifo));
+    }
+
+    /**
+     * Updates the distances of a graph after nodes and edges were added to it. New nodes take
+     * the indices from the old super sink on, and the super sink the new last index.
+     *
+     * @param outgoing outgoing adjacency of the grown graph.
+     * @param incoming incoming adjacency of the grown graph.
+     * @param oldSink  super sink index before the nodes were added.
+     * @param src      source of each added edge.
+     * @param dst      destination of each added edge.
+     * @return distance index of the grown graph.
+     */
+    DistanceIndex extend(CsrAdjacency outgoing, CsrAdjacency incoming, int oldSink, int[] src,
+                         int[] dst) {
+        int[] from = moveSink(fromInitial, oldSink, outgoing.numNodes());
+        int[] to = moveSink(toSink, oldSink, outgoing.numNodes());
+        int[] fifo = new int[outgoing.numNodes()];
+        BitSet queued = new BitSet(outgoing.numNodes());
+
+        int tail = 0;
+        for (int e = 0; e < src.length; e++)
+            if (shortens(from, src[e], dst[e]) && !queued.get(dst[e])) {
+                queued.set(dst[e]);
+                fifo[tail++] = dst[e];
+            }
+        relax(outgoing, from, fifo, tail, queued);
+
+        tail = 0;
+        for (int e = 0; e < src.length; e++)
+            if (shortens(to, dst[e], src[e]) && !queued.get(src[e])) {
+                queued.set(src[e]);
+                fifo[tail++] = src[e];
+            }
+        relax(incoming, to, fifo, tail, queued);
+
+        return new DistanceIndex(from, to);
+    }
+
+    /**
+     * Checks whether a node reaches a final state.
+     *
+     * @param node node index.
+     * @return true if some path leads from the node to the super sink; false otherwise.
+     */
+    boolean reachesSink(int node) {
+        return toSink[node] != UNREACHABLE;
+    }
+
+    /**
+     * Copies distances to a larger graph: new nodes are unreachable and the super sink keeps
+     * its distance at its new index.
+     */
+    private static int[] moveSink(int[] distance, int oldSink, int numNodes) {
+        int[] moved = Arrays.copyOf(distance, numNodes);
+        Arrays.fill(moved, oldSink, numNodes, UNREACHABLE);
+        moved[numNodes - 1] = distance[oldSink];
+        return moved;
+    }
+
+    /**
+     * Shortens the distance of a node through an edge, if the edge makes it shorter.
+     *
+     * @return true if the distance of next changed.
+     */
+    private static boolean shortens(int[] distance, int node, int next) {
+        if (distance[node] == UNREACHABLE)
+            return false;
+        if (distance[next] != UNREACHABLE && distance[next] <= distance[node] + 1)
+            return false;
+        distance[next] = distance[node] + 1;
+        return true;
+    }
+
+    /**
+     * Propagates shortened distances from the queued nodes, until no distance shortens. The
+     * queue is circular: a node is queued at most once at a time.
+     */
+    private static void relax(CsrAdjacency adjacency, int[] distance, int[] fifo, int tail,
+                              BitSet queued) {
+        int head = 0, size = tail;
+        while (size > 0) {
+            int node = fifo[head];
+            head = (head + 1) % fifo.length;
+            size--;
+            queued.clear(node);
+
+            for (int slot = adjacency.start(node); slot < adjacency.end(node); slot++) {
+                int next = adjacency.target(slot);
+                if (shortens(distance, node, next) && !queued.get(next)) {
+                    queued.set(next);
+                    fifo[(head + size++) % fifo.length] = next;
+                }
+            }
+        }
+    }
+
+    private static int[] distances(CsrAdjacency adjacency, int root, int[] fifo) {
+        int[] distance = new int[adjacency.numNodes()];
+        Arrays.fill(distance, UNREACHABLE);
+        int head = 0, tail = 0;
+        fifo[tail++] = root;
+        distance[root] = 0;
+
+        while (head < tail) {
+            int node = fifo[head++];
+            for (int slot = adjacency.start(node); slot < adjacency.end(node); slot++) {
+                int next = adjacency.target(slot);
+                if (distance[next] == UNREACHABLE) {
+                    distance[next] = distance[node] + 1;
+                    fifo[tail++] = next;
+                }
+            }
+        }
+        return distance;
+    }
+}
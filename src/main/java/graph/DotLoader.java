@@ -0,0 +1,985 @@
+package graph;
+
+import domain.State;
+import metrics.Metrics;
+import metrics.Metrics.Counter;
+import parser.VisitorOrientedParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Single pass DOT loader. The file is memory-mapped and scanned byte by byte: node ids and
+ * edge labels are read straight from the mapped bytes, and only the state labels handed to the
+ * TLA+ parser are turned into strings. Edges are kept with their DOT ids and resolved once the
+ * whole read has been scanned.
+ * <p>
+ * The file is split into line-aligned chunks. Sequentially, the chunks are scanned in order into
+ * a single accumulator; in parallel, each chunk is scanned on a fork/join worker (with its own
+ * parser) and the chunks are merged in file order, so both modes produce the same graph.
+ * <p>
+ * The loader keeps the mapped chunks and the position of every state label, so labels can be
+ * read back later. In lazy mode no state is parsed while loading: whether a state is final is
+ * read from its label bytes (see {@link #isFinalLabel(ByteBuffer, int, int)}).
+ * <p>
+ * Only complete lines, ending with a line break, are read. Lines written to the file later, or
+ * handed over as a batch, can be read afterwards: their nodes take the next node indices and
+ * their edges the next edge ids, as if the whole file had been loaded at once. The model checker
+ * may describe an edge before the state it leads to; such an edge waits until a later read
+ * declares that state, and takes the next edge id then. The edges after it are resolved.
+ */
+final class DotLoader {
+
+    // DOT processing
+    private static final byte[] EDGE_CHAR = " -> ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LABEL = "label=\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte QUOTE = '"';
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte MINUS = '-';
+    private static final byte CONJUNCTION = '/';
+    private static final byte BACKSLASH = '\\';
+    private static final byte EQUALS = '=';
+    private static final byte[] FINAL_VARIABLE = "f".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "TRUE".getBytes(StandardCharsets.US_ASCII);
+
+    // Exceptions
+    private static final String BAD_PARALLELISM = "Parallelism must be positive: %d.";
+    private static final String SHRUNK = "File %s is shorter than the part already read.";
+
+    // Edge labels
+    private static final String FINAL = "final";
+    private static final int SINK = -1;   // label of the edges to the super sink node
+
+    // Largest region mapped at once
+    private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+    // Chunks per worker in parallel mode, so that uneven chunks are balanced
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    // Bytes read at a time when looking for a line boundary
+    private static final int PROBE_SIZE = 64 * 1024;
+
+    // Initial sizes
+    private static final int INITIAL_NODES = 1000;
+    private static final int INITIAL_EDGES = 4000;
+    private static final int INITIAL_LABELS = 64;
+    private static final int INITIAL_PARAMS = 10;
+    private static final int INITIAL_LABEL_BYTES = 4096;
+
+    private final int parallelism;
+    private final boolean lazy;
+    private final Map<Long, Integer> nodesById;
+    private final LabelTable labels;
+    private final Metrics metrics;
+
+    private String filePath;      // DOT file, null until loaded
+    private long end;             // file position following the last line read
+    private long position;        // label position following the last chunk read
+
+    private State[] states;       // states in node declaration order, null in lazy mode
+    private long[] labelOffsets;  // label position of each node
+    private int[] labelLengths;   // byte length of each node's label
+    private final BitSet finalStates;   // nodes whose state is final
+    private ByteBuffer[] windows; // chunks read, mapped or wrapped
+    private long[] bounds;        // label position of each chunk, then of the end of the last one
+    private StateLabels stateLabels;    // labels handed out, extended by later reads
+
+    // Edges of the last read
+    private int[] edgeSrc;        // source node of each edge
+    private int[] edgeDst;        // destination node of each edge
+    private int[] edgeLabel;      // label of each edge, SINK for edges to the super sink
+    private int numEdges;         // edges recorded, including the super sink ones
+    private int numDotEdges;      // edges described in the DOT file, in every read
+
+    // Edges referring to nodes not declared yet, and the edges following them, in file order
+    private long[] pendingSrc;    // DOT id of each edge's source
+    private long[] pendingDst;    // DOT id of each edge's destination
+    private int[] pendingLabel;   // label of each edge, SINK for edges to the super sink
+    private int numPending;
+
+    /**
+     * Creates a loader that scans the file in the calling thread.
+     */
+    DotLoader() {
+        this(1, false);
+    }
+
+    /**
+     * Creates a loader.
+     *
+     * @param parallelism number of workers parsing the file; 1 scans it in the calling thread.
+     * @param lazy        whether to drop the parsed states.
+     */
+    DotLoader(int parallelism, boolean lazy) {
+        this(parallelism, lazy, new Metrics());
+    }
+
+    /**
+     * Creates a loader that counts the bytes, lines, nodes and edges it reads.
+     *
+     * @param parallelism number of workers parsing the file; 1 scans it in the calling thread.
+     * @param lazy        whether to drop the parsed states.
+     * @param metrics     metrics to add to.
+     */
+    DotLoader(int parallelism, boolean lazy, Metrics metrics) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException(String.format(BAD_PARALLELISM, parallelism));
+
+        this.parallelism = parallelism;
+        this.lazy = lazy;
+        this.metrics = metrics;
+        nodesById = new HashMap<>(INITIAL_NODES);
+        labels = new LabelTable();
+
+        // Room for the super sink, which has no label
+        labelOffsets = new long[] {-1};
+        labelLengths = new int[1];
+        if (!lazy)
+            states = new State[1];
+        finalStates = new BitSet();
+        windows = new ByteBuffer[0];
+        bounds = new long[1];
+        pendingSrc = new long[0];
+        pendingDst = new long[0];
+        pendingLabel = new int[0];
+    }
+
+    /**
+     * Reads the whole DOT file.
+     *
+     * @param filePath DOT file path.
+     * @throws IOException when the file cannot be read.
+     */
+    void load(String filePath) throws IOException {
+        this.filePath = filePath;
+        loadAppended();
+    }
+
+    /**
+     * Reads the lines written to the DOT file since the last read. A last line without a line
+     * break is left for a later read.
+     *
+     * @return true if any line was read; false otherwise.
+     * @throws IOException when the file cannot be read or is shorter than the part already read.
+     */
+    boolean loadAppended() throws IOException {
+        ByteBuffer[] chunks;
+        long[] chunkBounds;
+
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < end)
+                throw new IOException(String.format(SHRUNK, filePath));
+
+            long to = lastLineEnd(channel, end, size);
+            if (to == end)
+                return false;
+
+            int numChunks = (int) Math.max(parallelism == 1 ? 1 : parallelism * CHUNKS_PER_WORKER,
+                    (to - end + MAX_WINDOW - 1) / MAX_WINDOW);
+            chunkBounds = chunkBounds(channel, end, to, numChunks);
+
+            chunks = new ByteBuffer[chunkBounds.length - 1];
+            for (int i = 0; i < chunks.length; i++)
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkBounds[i],
+                        chunkBounds[i + 1] - chunkBounds[i]);
+        }
+
+        // Labels are addressed after the ones of earlier reads
+        long[] bases = new long[chunkBounds.length];
+        for (int i = 0; i < bases.length; i++)
+            bases[i] = position + chunkBounds[i] - end;
+
+        if (parallelism == 1 || chunks.length == 1)
+            merge(List.of(scanInOrder(chunks, bases)), chunks, bases);
+        else
+            merge(scanInParallel(chunks, bases), chunks, bases);
+        end = chunkBounds[chunks.length];
+        return true;
+    }
+
+    /**
+     * Reads a batch of DOT lines, as if they were appended to the file. The file itself is not
+     * read.
+     *
+     * @param lines node and edge descriptions, one per line.
+     */
+    void loadLines(String lines) {
+        ByteBuffer[] chunks = {ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8))};
+        long[] bases = {position, position + chunks[0].limit()};
+        merge(List.of(scanInOrder(chunks, bases)), chunks, bases);
+    }
+
+    /**
+     * Returns the DOT id to node index correspondence.
+     *
+     * @return nodes by id.
+     */
+    Map<Long, Integer> nodesById() {
+        return nodesById;
+    }
+
+    /**
+     * Returns the number of nodes declared in the DOT file, in every read.
+     *
+     * @return number of nodes.
+     */
+    int numNodes() {
+        return nodesById.size();
+    }
+
+    /**
+     * Returns the number of edges described in the DOT file, in every read, and resolved.
+     *
+     * @return number of edges, not counting the edges to the super sink.
+     */
+    int numDotEdges() {
+        return numDotEdges;
+    }
+
+    /**
+     * Returns the number of edges read but not resolved yet, as they refer to a node not
+     * declared so far.
+     *
+     * @return number of pending edges.
+     */
+    int numPendingEdges() {
+        return numPending;
+    }
+
+    /**
+     * Returns the parsed states, indexed by node. The array has room for the super sink node.
+     *
+     * @return states; null in lazy mode.
+     */
+    State[] states() {
+        return states;
+    }
+
+    /**
+     * Returns the state labels, read from the mapped file and parsed on demand, indexed by node.
+     * The super sink node (the last index) has no label. Later reads extend the returned labels.
+     *
+     * @param cacheSize maximum number of parsed states kept.
+     * @return state labels.
+     */
+    StateLabels labels(int cacheSize) {
+        stateLabels = new StateLabels(windows, bounds, labelOffsets, labelLengths, cacheSize);
+        return stateLabels;
+    }
+
+    /**
+     * Returns the nodes whose state is final.
+     *
+     * @return final states.
+     */
+    BitSet finalStates() {
+        return finalStates;
+    }
+
+    /**
+     * Builds the edges recorded by the last read, in file order. The edges to the super sink are
+     * placed where their final state was declared. Transitions and parameters are interned as
+     * the edges are built: each distinct label is interned once.
+     *
+     * @param finalState super sink node index.
+     * @param symbols    symbol tables the edge labels are interned into.
+     * @return edges of the last read, in edge id order.
+     */
+    Edge[] edges(int finalState, EdgeSymbols symbols) {
+        Edge[] edges = new Edge[numEdges];
+        String[] transitions = new String[labels.size()];     // interned, by label id
+        String[][] tuples = new String[labels.size()][];
+        String sinkTransition = symbols.transition(symbols.internTransition(FINAL));
+        String[] sinkTuple = symbols.tuple(symbols.internTuple(new String[INITIAL_PARAMS]));
+
+        for (int e = 0; e < numEdges; e++) {
+            int label = edgeLabel[e];
+            if (label == SINK) {
+                edges[e] = new Edge(edgeSrc[e], finalState, sinkTransition, sinkTuple);
+                continue;
+            }
+
+            if (transitions[label] == null) {
+                transitions[label] = symbols.transition(
+                        symbols.internTransition(labels.transition(label)));
+                tuples[label] = symbols.tuple(symbols.internTuple(labels.parameters(label)));
+            }
+            edges[e] = new Edge(edgeSrc[e], edgeDst[e], transitions[label], tuples[label]);
+        }
+
+        return edges;
+    }
+
+    /**
+     * Creates the edge from a final state to the super sink node, with interned labels.
+     *
+     * @param src        final state node index.
+     * @param finalState super sink node index.
+     * @param symbols    symbol tables the edge labels are interned into.
+     * @return edge to the super sink.
+     */
+    static Edge sinkEdge(int src, int finalState, EdgeSymbols symbols) {
+        return symbols.edge(src, finalState, FINAL, new String[INITIAL_PARAMS]);
+    }
+
+    // Chunking
+
+    /**
+     * Splits a range of lines of the file into chunks that start and end at line boundaries.
+     * Chunks never exceed the largest mappable window, as long as no single line does.
+     *
+     * @param channel   DOT file.
+     * @param from      start of the first line.
+     * @param to        end of the range, right after a line break.
+     * @param numChunks wanted number of chunks.
+     * @return chunk boundaries: chunk i covers [bounds[i], bounds[i + 1]).
+     * @throws IOException when the file cannot be read.
+     */
+    private static long[] chunkBounds(FileChannel channel, long from, long to, int numChunks)
+            throws IOException {
+        long[] bounds = new long[numChunks + 1];
+        bounds[0] = from;
+        int count = 1;
+
+        for (int i = 1; i < numChunks; i++) {
+            long target = Math.max(bounds[count - 1], from + (to - from) / numChunks * i);
+            long bound = nextLineStart(channel, to, target);
+            if (bound > bounds[count - 1] && bound < to)
+                bounds[count++] = bound;
+        }
+        bounds[count++] = to;
+
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Returns the end of the last complete line of the file, i.e. the position right after its
+     * last line break.
+     *
+     * @param channel DOT file.
+     * @param from    start of the part of the file to look into.
+     * @param size    file size.
+     * @return end of the last line; [from] if there is no line break after it.
+     * @throws IOException when the file cannot be read.
+     */
+    private static long lastLineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        for (long at = size; at > from; ) {
+            long start = Math.max(from, at - PROBE_SIZE);
+            probe.clear();
+            probe.limit((int) (at - start));
+            channel.read(probe, start);
+            probe.flip();
+
+            for (int i = probe.limit() - 1; i >= 0; i--)
+                if (probe.get(i) == NEW_LINE)
+                    return start + i + 1;
+            at = start;
+        }
+
+        return from;
+    }
+
+    /**
+     * Returns the start of the first line beginning at or after the given position.
+     *
+     * @param channel DOT file.
+     * @param size    file size.
+     * @param pos     position in the file.
+     * @return line start; the file size if there is no further line.
+     * @throws IOException when the file cannot be read.
+     */
+    private static long nextLineStart(FileChannel channel, long size, long pos) throws IOException {
+        if (pos == 0)
+            return 0;
+
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        for (long at = pos - 1; at < size; at += probe.limit()) {
+            probe.clear();
+            channel.read(probe, at);
+            probe.flip();
+
+            int newLine = indexOf(probe, NEW_LINE, 0, probe.limit());
+            if (newLine >= 0)
+                return at + newLine + 1;
+        }
+
+        return size;
+    }
+
+    /**
+     * Scans the given chunks in the calling thread, in order, into a single accumulator.
+     *
+     * @param chunks chunks to scan.
+     * @param bases  label position of each chunk.
+     * @return scanned lines.
+     */
+    private Chunk scanInOrder(ByteBuffer[] chunks, long[] bases) {
+        Chunk chunk = new Chunk(new VisitorOrientedParser(), lazy);
+        for (int i = 0; i < chunks.length; i++)
+            chunk.scan(chunks[i], bases[i]);
+        return chunk;
+    }
+
+    /**
+     * Scans the given chunks on a fork/join pool. Each worker owns a parser.
+     *
+     * @param chunks chunks to scan.
+     * @param bases  label position of each chunk.
+     * @return scanned chunks, in file order.
+     * @throws IOException when the file cannot be read.
+     */
+    private List<Chunk> scanInParallel(ByteBuffer[] chunks, long[] bases) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ThreadLocal<VisitorOrientedParser> parsers =
+                ThreadLocal.withInitial(VisitorOrientedParser::new);
+
+        List<Callable<Chunk>> tasks = new ArrayList<>(chunks.length);
+        for (int i = 0; i < chunks.length; i++) {
+            ByteBuffer window = chunks[i];
+            long base = bases[i];
+            tasks.add(() -> {
+                Chunk chunk = new Chunk(parsers.get(), lazy);
+                chunk.scan(window, base);
+                return chunk;
+            });
+        }
+
+        try {
+            List<Chunk> scanned = new ArrayList<>(tasks.size());
+            for (Future<Chunk> chunk : pool.invokeAll(tasks))
+                scanned.add(chunk.get());
+            return scanned;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause)
+                throw cause;
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Appends the scanned chunks, in file order, to the node index, and resolves their edges into
+     * the edge columns, in file order. Edges referring to a node not declared yet wait for a
+     * later read to declare it; the edges after them are resolved.
+     *
+     * @param scanned scanned chunks.
+     * @param chunks  chunks read.
+     * @param bases   label position of each chunk, then of the end of the last one.
+     */
+    private void merge(List<Chunk> scanned, ByteBuffer[] chunks, long[] bases) {
+        int firstNode = nodesById.size();
+        int oldNodes = firstNode, oldEdges = numDotEdges;
+        int totalNodes = firstNode, totalEdges = numPending;
+        long numLines = 0;
+        for (Chunk chunk : scanned) {
+            totalNodes += chunk.numNodes;
+            totalEdges += chunk.numEdges;
+            numLines += chunk.numLines;
+        }
+
+        // The super sink keeps the last index, after the new nodes
+        labelOffsets = Arrays.copyOf(labelOffsets, totalNodes + 1);
+        labelLengths = Arrays.copyOf(labelLengths, totalNodes + 1);
+        labelOffsets[totalNodes] = -1;
+        labelLengths[totalNodes] = 0;
+        if (!lazy)
+            states = Arrays.copyOf(states, totalNodes + 1);
+        long[] src = Arrays.copyOf(pendingSrc, totalEdges);
+        long[] dst = Arrays.copyOf(pendingDst, totalEdges);
+        int[] label = Arrays.copyOf(pendingLabel, totalEdges);
+        int count = numPending;
+
+        for (Chunk chunk : scanned) {
+            for (int i = 0; i < chunk.numNodes; i++)
+                nodesById.put(chunk.nodeIds[i], firstNode + i);
+            System.arraycopy(chunk.labelOffsets, 0, labelOffsets, firstNode, chunk.numNodes);
+            System.arraycopy(chunk.labelLengths, 0, labelLengths, firstNode, chunk.numNodes);
+            if (!lazy)
+                System.arraycopy(chunk.states, 0, states, firstNode, chunk.numNodes);
+            for (int i = chunk.finals.nextSetBit(0); i >= 0; i = chunk.finals.nextSetBit(i + 1))
+                finalStates.set(firstNode + i);
+
+            int[] labelIds = new int[chunk.labels.size()];
+            for (int l = 0; l < labelIds.length; l++)
+                labelIds[l] = labels.intern(chunk.labels, l);
+
+            System.arraycopy(chunk.edgeSrc, 0, src, count, chunk.numEdges);
+            System.arraycopy(chunk.edgeDst, 0, dst, count, chunk.numEdges);
+            for (int e = 0; e < chunk.numEdges; e++) {
+                int l = chunk.edgeLabel[e];
+                label[count++] = l == SINK ? SINK : labelIds[l];
+            }
+
+            firstNode += chunk.numNodes;
+        }
+
+        // Resolved edges are compacted in place, pending ones moved to the pending columns
+        edgeSrc = new int[totalEdges];
+        edgeDst = new int[totalEdges];
+        edgeLabel = label;
+        numEdges = 0;
+        numPending = 0;
+        long[] waitingSrc = new long[totalEdges];
+        long[] waitingDst = new long[totalEdges];
+        int[] waitingLabel = new int[totalEdges];
+        for (int e = 0; e < totalEdges; e++) {
+            Integer srcNode = nodesById.get(src[e]);
+            Integer dstNode = nodesById.get(dst[e]);
+            if (srcNode == null || dstNode == null) {
+                waitingSrc[numPending] = src[e];
+                waitingDst[numPending] = dst[e];
+                waitingLabel[numPending++] = label[e];
+                continue;
+            }
+
+            edgeSrc[numEdges] = srcNode;
+            edgeDst[numEdges] = dstNode;
+            edgeLabel[numEdges++] = label[e];
+            if (label[e] != SINK)
+                numDotEdges++;
+        }
+
+        pendingSrc = Arrays.copyOf(waitingSrc, numPending);
+        pendingDst = Arrays.copyOf(waitingDst, numPending);
+        pendingLabel = Arrays.copyOf(waitingLabel, numPending);
+
+        // Eager loads parse every node's state while scanning; lazy loads parse none
+        metrics.add(Counter.DOT_BYTES, bases[chunks.length] - bases[0]);
+        metrics.add(Counter.LINES, numLines);
+        if (!lazy)
+            metrics.add(Counter.STATES_PARSED, totalNodes - oldNodes);
+        metrics.add(Counter.NODES, totalNodes - oldNodes);
+        metrics.add(Counter.EDGES, numDotEdges - oldEdges);
+
+        // The chunks stay reachable, so labels can be read back
+        int numWindows = windows.length;
+        windows = Arrays.copyOf(windows, numWindows + chunks.length);
+        System.arraycopy(chunks, 0, windows, numWindows, chunks.length);
+        bounds = Arrays.copyOf(bounds, numWindows + bases.length);
+        System.arraycopy(bases, 0, bounds, numWindows, bases.length);
+        position = bases[chunks.length];
+
+        if (stateLabels != null)
+            stateLabels.extend(windows, bounds, labelOffsets, labelLengths);
+    }
+
+    /**
+     * Nodes and edges of a contiguous range of lines, in file order.
+     */
+    private static final class Chunk {
+
+        private final VisitorOrientedParser parser;
+        private final boolean lazy;
+        private final LabelTable labels;
+
+        private long[] nodeIds;       // DOT id of each node
+        private State[] states;       // state of each node, null in lazy mode
+        private long[] labelOffsets;  // file position of each node's label
+        private int[] labelLengths;   // byte length of each node's label
+        private final BitSet finals;  // nodes whose state is final
+        private int numNodes;
+
+        private long[] edgeSrc;       // DOT id of each edge's source
+        private long[] edgeDst;       // DOT id of each edge's destination
+        private int[] edgeLabel;      // chunk label of each edge, SINK for super sink edges
+        private int numEdges;
+        private int numLines;
+
+        private byte[] scratch;       // reused buffer for the state labels
+
+        Chunk(VisitorOrientedParser parser, boolean lazy) {
+            this.parser = parser;
+            this.lazy = lazy;
+            labels = new LabelTable();
+            nodeIds = new long[INITIAL_NODES];
+            labelOffsets = new long[INITIAL_NODES];
+            labelLengths = new int[INITIAL_NODES];
+            if (!lazy)
+                states = new State[INITIAL_NODES];
+            finals = new BitSet(INITIAL_NODES);
+            edgeSrc = new long[INITIAL_EDGES];
+            edgeDst = new long[INITIAL_EDGES];
+            edgeLabel = new int[INITIAL_EDGES];
+            scratch = new byte[INITIAL_LABEL_BYTES];
+        }
+
+        /**
+         * Scans the lines of a mapped chunk of the file.
+         *
+         * @param window mapped chunk, ending right after a line break or at the end of the file.
+         * @param base   file position of the chunk.
+         */
+        void scan(ByteBuffer window, long base) {
+            int limit = window.limit();
+            int lineStart = 0;
+            int lines = 0;
+
+            for (; lineStart < limit; lines++) {
+                int lineEnd = indexOf(window, NEW_LINE, lineStart, limit);
+                if (lineEnd < 0)
+                    lineEnd = limit;
+
+                int end = lineEnd;
+                if (end > lineStart && window.get(end - 1) == CARRIAGE_RETURN)
+                    end--;
+
+                processLine(window, base, lineStart, end);
+                lineStart = lineEnd + 1;
+            }
+            numLines += lines;
+        }
+
+        /**
+         * Processes a node or an edge description. Any other line is ignored.
+         *
+         * @param buf  mapped bytes.
+         * @param base file position of the mapped bytes.
+         * @param from line start.
+         * @param to   line end (exclusive).
+         */
+        private void processLine(ByteBuffer buf, long base, int from, int to) {
+            int pos = skipBlanks(buf, from, to);
+            int idEnd = numberEnd(buf, pos, to);
+            if (idEnd < 0)
+                return;
+
+            long id = parseLong(buf, pos, idEnd);
+
+            if (startsWith(buf, idEnd, to, EDGE_CHAR)) {
+                int dstStart = skipBlanks(buf, idEnd + EDGE_CHAR.length, to);
+                int dstEnd = numberEnd(buf, dstStart, to);
+                int labelStart = dstEnd < 0 ? -1 : indexOf(buf, LABEL, dstEnd, to);
+                if (labelStart < 0)
+                    return;
+
+                labelStart += LABEL.length;
+                int labelEnd = indexOf(buf, QUOTE, labelStart, to);
+                addEdge(id, parseLong(buf, dstStart, dstEnd), labels.intern(buf, labelStart, labelEnd));
+
+            } else if (indexOf(buf, LABEL, idEnd, to) >= 0) {
+                int labelStart = indexOf(buf, QUOTE, idEnd, to) + 1;
+                int labelEnd = indexOf(buf, QUOTE, labelStart, to);
+                State state = lazy ? null : parser.parse(decode(buf, labelStart, labelEnd));
+                boolean isFinal = lazy ? isFinalLabel(buf, labelStart, labelEnd)
+                        : state.isFinalState();
+                addNode(id, state, isFinal, base + labelStart, labelEnd - labelStart);
+            }
+        }
+
+        /**
+         * Records a node and, when it is a final state, its edge to the super sink.
+         *
+         * @param dotId       node DOT id.
+         * @param state       node state; null in lazy mode.
+         * @param isFinal     whether the state is final.
+         * @param labelOffset file position of the node's label.
+         * @param labelLength byte length of the node's label.
+         */
+        private void addNode(long dotId, State state, boolean isFinal, long labelOffset,
+                             int labelLength) {
+            if (numNodes == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, numNodes * 2);
+                labelOffsets = Arrays.copyOf(labelOffsets, numNodes * 2);
+                labelLengths = Arrays.copyOf(labelLengths, numNodes * 2);
+                if (!lazy)
+                    states = Arrays.copyOf(states, numNodes * 2);
+            }
+
+            nodeIds[numNodes] = dotId;
+            labelOffsets[numNodes] = labelOffset;
+            labelLengths[numNodes] = labelLength;
+            if (!lazy)
+                states[numNodes] = state;
+
+            // Adds an edge from all the final states to the super sink node.
+            if (isFinal) {
+                finals.set(numNodes);
+                addEdge(dotId, dotId, SINK);
+            }
+            numNodes++;
+        }
+
+        /**
+         * Records an edge, growing the edge columns when needed.
+         *
+         * @param src   source DOT id.
+         * @param dst   destination DOT id.
+         * @param label edge label.
+         */
+        private void addEdge(long src, long dst, int label) {
+            if (numEdges == edgeSrc.length) {
+                edgeSrc = Arrays.copyOf(edgeSrc, numEdges * 2);
+                edgeDst = Arrays.copyOf(edgeDst, numEdges * 2);
+                edgeLabel = Arrays.copyOf(edgeLabel, numEdges * 2);
+            }
+
+            edgeSrc[numEdges] = src;
+            edgeDst[numEdges] = dst;
+            edgeLabel[numEdges] = label;
+            numEdges++;
+        }
+
+        /**
+         * Decodes the given bytes into a string.
+         *
+         * @param buf  mapped bytes.
+         * @param from first byte.
+         * @param to   last byte (exclusive).
+         * @return decoded string.
+         */
+        private String decode(ByteBuffer buf, int from, int to) {
+            int length = to - from;
+            if (length > scratch.length)
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+
+            buf.get(from, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Byte helpers
+
+    private static int skipBlanks(ByteBuffer buf, int from, int to) {
+        while (from < to && buf.get(from) <= ' ')
+            from++;
+        return from;
+    }
+
+    /**
+     * Returns the end of the (optionally negative) integer starting at the given position.
+     *
+     * @return end of the number (exclusive); -1 if there is no number.
+     */
+    private static int numberEnd(ByteBuffer buf, int from, int to) {
+        int pos = from < to && buf.get(from) == MINUS ? from + 1 : from;
+        int digits = pos;
+
+        while (pos < to && isDigit(buf.get(pos)))
+            pos++;
+
+        return pos > digits ? pos : -1;
+    }
+
+    private static long parseLong(ByteBuffer buf, int from, int to) {
+        boolean negative = buf.get(from) == MINUS;
+        long value = 0;
+
+        for (int i = negative ? from + 1 : from; i < to; i++)
+            value = value * 10 - (buf.get(i) - '0');
+
+        return negative ? value : -value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Checks whether a state label describes a final state without parsing it, as
+     * State.isFinalState() does: one of its conjuncts sets the variable f to TRUE. Conjuncts
+     * start with /\ (escaped as /\\ in the DOT file).
+     *
+     * @param buf  mapped bytes.
+     * @param from label start.
+     * @param to   label end (exclusive).
+     * @return true if the state is final; false otherwise.
+     */
+    static boolean isFinalLabel(ByteBuffer buf, int from, int to) {
+        for (int pos = from; pos < to; pos++) {
+            if (buf.get(pos) != CONJUNCTION || pos + 1 >= to || buf.get(pos + 1) != BACKSLASH)
+                continue;
+
+            int at = pos + 1;
+            while (at < to && buf.get(at) == BACKSLASH)
+                at++;
+            at = skipBlanks(buf, at, to);
+            if (!startsWith(buf, at, to, FINAL_VARIABLE))
+                continue;
+
+            at = skipBlanks(buf, at + FINAL_VARIABLE.length, to);
+            if (at == to || buf.get(at) != EQUALS)
+                continue;
+
+            at = skipBlanks(buf, at + 1, to);
+            return startsWith(buf, at, to, TRUE) && (at + TRUE.length == to
+                    || !isNameByte(buf.get(at + TRUE.length)));
+        }
+        return false;
+    }
+
+    private static boolean isNameByte(byte b) {
+        return b == '_' || b >= '0' && b <= '9' || b >= 'A' && b <= 'Z' || b >= 'a' && b <= 'z';
+    }
+
+    private static boolean startsWith(ByteBuffer buf, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length)
+            return false;
+
+        for (int i = 0; i < prefix.length; i++)
+            if (buf.get(from + i) != prefix[i])
+                return false;
+
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++)
+            if (buf.get(i) == b)
+                return i;
+
+        return -1;
+    }
+
+    private static int indexOf(ByteBuffer buf, byte[] pattern, int from, int to) {
+        for (int i = from; i <= to - pattern.length; i++)
+            if (buf.get(i) == pattern[0] && startsWith(buf, i, to, pattern))
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * Edge labels by content. Each distinct label is decoded into its transition and parameters
+     * once; lookups compare the raw bytes.
+     */
+    private static final class LabelTable {
+
+        private int[] slots;          // label id + 1 per hash slot, 0 when free
+        private byte[][] keys;        // raw label bytes
+        private String[] transitions;
+        private String[][] parameters;
+        private int size;
+
+        LabelTable() {
+            slots = new int[INITIAL_LABELS * 2];
+            keys = new byte[INITIAL_LABELS][];
+            transitions = new String[INITIAL_LABELS];
+            parameters = new String[INITIAL_LABELS][];
+        }
+
+        int size() {
+            return size;
+        }
+
+        String transition(int label) {
+            return transitions[label];
+        }
+
+        String[] parameters(int label) {
+            return parameters[label];
+        }
+
+        /**
+         * Returns the id of the label stored in the given bytes, adding it when new.
+         *
+         * @param buf  mapped bytes.
+         * @param from label start.
+         * @param to   label end (exclusive).
+         * @return label id.
+         */
+        int intern(ByteBuffer buf, int from, int to) {
+            int hash = hash(buf, from, to);
+            int mask = slots.length - 1;
+
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int label = slots[slot] - 1;
+                if (label < 0)
+                    return add(slot, buf, from, to);
+                if (matches(keys[label], buf, from, to))
+                    return label;
+            }
+        }
+
+        /**
+         * Returns the id of a label of another table, adding it when new.
+         *
+         * @param other table holding the label.
+         * @param label label id in the other table.
+         * @return label id in this table.
+         */
+        int intern(LabelTable other, int label) {
+            byte[] key = other.keys[label];
+            return intern(ByteBuffer.wrap(key), 0, key.length);
+        }
+
+        private int add(int slot, ByteBuffer buf, int from, int to) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                transitions = Arrays.copyOf(transitions, size * 2);
+                parameters = Arrays.copyOf(parameters, size * 2);
+            }
+
+            byte[] key = new byte[to - from];
+            buf.get(from, key);
+            String label = new String(key, StandardCharsets.UTF_8);
+
+            keys[size] = key;
+            transitions[size] = label.split("\\(")[0];
+            parameters[size] = processParameters(label);
+            slots[slot] = ++size;
+
+            if (size * 2 > slots.length)
+                rehash();
+
+            return size - 1;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+
+            for (int label = 0; label < size; label++) {
+                byte[] key = keys[label];
+                int slot = hash(ByteBuffer.wrap(key), 0, key.length) & mask;
+                while (slots[slot] != 0)
+                    slot = (slot + 1) & mask;
+                slots[slot] = label + 1;
+            }
+        }
+
+        private static int hash(ByteBuffer buf, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++)
+                h = 31 * h + buf.get(i);
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buf, int from, int to) {
+            return key.length == to - from && startsWith(buf, from, to, key);
+        }
+
+        /**
+         * Process transition operation parameters
+         *
+         * @param label  edge label description (dot). E.g. label="postEnrollment(e1, t1, p1)"
+         * @return an array of TLA model value IDs.
+         */
+        private static String[] processParameters(String label) {
+            // Split by "("; remove ")"; then split by ","
+            return label.split("\\(")[1].replace(")", "").split(",");
+        }
+    }
+}
@@ -2,6 +2,7 @@ package graph;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 public class Edge {
 
@@ -45,24 +46,43 @@ public class Edge {
     }
 
     /**
-     * Returns the transition operation parameters.
+     * Returns the transition operation parameters. Edges with equal parameters share one
+     * interned array, so a copy is returned.
      *
-     * @return parameters.
+     * @return copy of the parameters.
      */
     public String[] getParameters() {
+        return parameters.clone();
+    }
+
+    /**
+     * Returns the transition operation parameters without copying them.
+     *
+     * @return parameters, shared with the edges that have the same ones; never modified.
+     */
+    String[] parameters() {
         return parameters;
     }
 
     /**
      * Checks whether the edge is equal to the given edge.
-     * Two edges are equal if they share the same source and destination.
+     * Two edges are equal if they share the same source, destination, transition and parameters;
+     * parallel edges with different transitions or parameters are different edges.
      *
      * @param object edge to compare.
      * @return true if they're equal; false otherwise
      */
     @Override
     public boolean equals(Object object) {
-        return object instanceof Edge other && src == other.getSrc() && dst == other.getDst();
+        return object instanceof Edge other && src == other.getSrc() && dst == other.getDst()
+                && Objects.equals(transition, other.getTransition())
+                && Arrays.equals(parameters, other.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * src + dst) + Objects.hashCode(transition))
+                + Arrays.hashCode(parameters);
     }
 
     @Override
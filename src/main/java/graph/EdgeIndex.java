@@ -0,0 +1,128 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Edge lookup by source and destination node, without boxing: an open-addressing table keyed by
+ * {@code (long) src << 32 | dst} holding edge ids. Parallel edges, i.e. edges with the same pair,
+ * are chained from the most recently added one.
+ */
+final class EdgeIndex {
+
+    static final int NONE = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] edgeIds;      // latest edge of each pair; NONE marks a free slot
+    private int[] parallel;     // previous edge with the same pair, by edge id
+    private int size;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param expected number of pairs expected, to size the table.
+     */
+    EdgeIndex(int expected) {
+        allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expected) * 2) * 2));
+        parallel = new int[Math.max(MIN_CAPACITY, expected)];
+    }
+
+    /**
+     * Adds an edge. If the pair already has edges, the new one becomes the latest.
+     *
+     * @param src    source node.
+     * @param dst    destination node.
+     * @param edgeId edge id.
+     */
+    void add(int src, int dst, int edgeId) {
+        if (edgeId >= parallel.length)
+            parallel = Arrays.copyOf(parallel, Math.max(edgeId + 1, parallel.length * 2));
+
+        long key = key(src, dst);
+        int slot = slot(key);
+        while (edgeIds[slot] != NONE) {
+            if (keys[slot] == key) {
+                parallel[edgeId] = edgeIds[slot];
+                edgeIds[slot] = edgeId;
+                return;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+
+        keys[slot] = key;
+        edgeIds[slot] = edgeId;
+        parallel[edgeId] = NONE;
+        if (++size * 2 > keys.length)
+            grow();
+    }
+
+    /**
+     * Returns the latest edge added for a node pair.
+     *
+     * @param src source node.
+     * @param dst destination node.
+     * @return edge id, or NONE if there is no such edge.
+     */
+    int get(int src, int dst) {
+        long key = key(src, dst);
+        for (int slot = slot(key); edgeIds[slot] != NONE; slot = (slot + 1) & (keys.length - 1))
+            if (keys[slot] == key)
+                return edgeIds[slot];
+        return NONE;
+    }
+
+    /**
+     * Returns the edge added before the given one for the same node pair.
+     *
+     * @param edgeId edge id.
+     * @return parallel edge id, or NONE if the given edge was the first.
+     */
+    int previous(int edgeId) {
+        return parallel[edgeId];
+    }
+
+    /**
+     * Returns the number of node pairs mapped.
+     *
+     * @return index size.
+     */
+    int size() {
+        return size;
+    }
+
+    private static long key(int src, int dst) {
+        return (long) src << 32 | (dst & 0xffffffffL);
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing spreads consecutive node ids over the table
+        return (int) ((key * 0x9e3779b97f4a7c15L) >>> 33) & (keys.length - 1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        edgeIds = new int[capacity];
+        Arrays.fill(edgeIds, NONE);
+    }
+
+    /**
+     * Doubles the table, keeping every mapping.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldEdgeIds = edgeIds;
+        allocate(oldKeys.length * 2);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldEdgeIds[i] == NONE)
+                continue;
+
+            int slot = slot(oldKeys[i]);
+            while (edgeIds[slot] != NONE)
+                slot = (slot + 1) & (keys.length - 1);
+            keys[slot] = oldKeys[i];
+            edgeIds[slot] = oldEdgeIds[i];
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interned symbol tables of the edge labels: transition names and parameter tuples. Equal
+ * transitions, tuples and parameter values share one instance, and edges refer to them by id.
+ * Interned tuples are shared by every edge that has them: they are never modified, and
+ * {@link Edge#getParameters()} hands out copies.
+ */
+final class EdgeSymbols {
+
+    private final Map<String, Integer> transitionIds = new HashMap<>();
+    private final List<String> transitions = new ArrayList<>();
+    private final Map<List<String>, Integer> tupleIds = new HashMap<>();
+    private final List<String[]> tuples = new ArrayList<>();
+    private final Map<String, String> values = new HashMap<>();     // interned parameter values
+
+    /**
+     * Returns the id of a transition name, adding it when new.
+     *
+     * @param transition transition name.
+     * @return transition id.
+     */
+    int internTransition(String transition) {
+        Integer id = transitionIds.putIfAbsent(transition, transitions.size());
+        if (id == null) {
+            id = transitions.size();
+            transitions.add(transition);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of a parameter tuple, adding it when new. Tuples compare by their values,
+     * null values included.
+     *
+     * @param tuple parameter values.
+     * @return tuple id.
+     */
+    int internTuple(String[] tuple) {
+        Integer id = tupleIds.get(Arrays.asList(tuple));
+        if (id != null)
+            return id;
+
+        String[] interned = new String[tuple.length];
+        for (int i = 0; i < tuple.length; i++)
+            interned[i] = tuple[i] == null ? null : values.computeIfAbsent(tuple[i], v -> v);
+
+        id = tuples.size();
+        tuples.add(interned);
+        tupleIds.put(Arrays.asList(interned), id);
+        return id;
+    }
+
+    /**
+     * Creates an edge whose transition and parameters are the interned instances of the given
+     * ones.
+     *
+     * @param src        source node index.
+     * @param dst        destination node index.
+     * @param transition transition name.
+     * @param parameters parameter values.
+     * @return edge with interned labels.
+     */
+    Edge edge(int src, int dst, String transition, String[] parameters) {
+        return new Edge(src, dst, transition(internTransition(transition)),
+                tuple(internTuple(parameters)));
+    }
+
+    String transition(int id) {
+        return transitions.get(id);
+    }
+
+    String[] tuple(int id) {
+        return tuples.get(id);
+    }
+
+    int numTransitions() {
+        return transitions.size();
+    }
+
+    int numTuples() {
+        return tuples.size();
+    }
+}
@@ -0,0 +1,519 @@
+package graph;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates random state space graphs shaped like the ones of the TLC model checker, to test
+ * loading and path generation at scale. The same options and seed always give the same graph,
+ * either written as a DOT file or built directly in memory.
+ * <p>
+ * Nodes are spread over BFS levels, from the initial state down. Every node is first reached
+ * from a node of the level above (a tree edge), so every node is reachable; each node then gets
+ * more edges, up to its out-degree, either to the level below or, with the cycle density
+ * probability, back to its own level or above, which closes cycles. Like TLC, the edge reaching
+ * a new state is described right before the state.
+ */
+public class GraphGenerator {
+
+    /**
+     * Distribution of the node out-degrees within their range.
+     */
+    public enum DegreeDistribution {
+        UNIFORM,        // every degree equally likely
+        POWER_LAW       // few nodes with many edges, most with few
+    }
+
+    // Exceptions
+    private static final String BAD_NODES = "Number of nodes must be positive: %d.";
+    private static final String BAD_DEGREE = "Bad out-degree range: [%d, %d].";
+    private static final String BAD_DEPTH = "Depth must be positive: %d.";
+    private static final String BAD_FRACTION = "%s must be within [0, 1]: %s.";
+    private static final String BAD_LABELS = "Label sizes must not be negative: %d, %d.";
+
+    // DOT layout
+    private static final String HEADER = "strict digraph DiskGraph {\n"
+            + "node [shape=box,style=rounded]\nnodesep=0.35;\n"
+            + "subgraph cluster_graph {\ncolor=\"white\";\n";
+    private static final String FOOTER = "}\n}\n";
+    private static final String EDGE_STYLE = ")\",color=\"black\",fontcolor=\"black\"];\n";
+
+    // Labels
+    private static final int TRANSITIONS = 16;    // distinct transition names
+    private static final int VALUES = 8;          // distinct model values
+    private static final double POWER_LAW_EXPONENT = 2.5;
+
+    // States parsed on demand kept in generated graphs
+    private static final int STATE_CACHE = 10000;
+
+    // Label bytes held per in-memory window
+    private static final int WINDOW_BYTES = 16 * 1024 * 1024;
+
+    private int nodes;
+    private int minDegree;
+    private int maxDegree;
+    private DegreeDistribution distribution;
+    private int depth;
+    private double finalFraction;
+    private double cycleDensity;
+    private int variables;
+    private int parameters;
+    private long seed;
+
+    public GraphGenerator() {
+        nodes = 1000;
+        minDegree = 1;
+        maxDegree = 3;
+        distribution = DegreeDistribution.UNIFORM;
+        depth = 10;
+        finalFraction = 0.05;
+        cycleDensity = 0.3;
+        variables = 4;
+        parameters = 2;
+        seed = 0;
+    }
+
+    /**
+     * Sets the number of nodes, not counting the super sink.
+     *
+     * @param nodes number of states.
+     * @return these options.
+     */
+    public GraphGenerator nodes(int nodes) {
+        if (nodes < 1)
+            throw new IllegalArgumentException(String.format(BAD_NODES, nodes));
+
+        this.nodes = nodes;
+        return this;
+    }
+
+    /**
+     * Sets the range of the node out-degrees, drawn uniformly. A node reaching more new states
+     * than its degree keeps an edge to each of them.
+     *
+     * @param min smallest out-degree.
+     * @param max largest out-degree.
+     * @return these options.
+     */
+    public GraphGenerator outDegree(int min, int max) {
+        return outDegree(min, max, DegreeDistribution.UNIFORM);
+    }
+
+    /**
+     * Sets the range and distribution of the node out-degrees. A node reaching more new states
+     * than its degree keeps an edge to each of them.
+     *
+     * @param min          smallest out-degree.
+     * @param max          largest out-degree.
+     * @param distribution distribution of the degrees within the range.
+     * @return these options.
+     */
+    public GraphGenerator outDegree(int min, int max, DegreeDistribution distribution) {
+        if (min < 0 || max < min)
+            throw new IllegalArgumentException(String.format(BAD_DEGREE, min, max));
+
+        this.minDegree = min;
+        this.maxDegree = max;
+        this.distribution = distribution;
+        return this;
+    }
+
+    /**
+     * Sets the number of BFS levels the nodes are spread over, i.e. the number of states on the
+     * shortest path to the deepest ones. Capped by the number of nodes.
+     *
+     * @param depth number of levels.
+     * @return these options.
+     */
+    public GraphGenerator depth(int depth) {
+        if (depth < 1)
+            throw new IllegalArgumentException(String.format(BAD_DEPTH, depth));
+
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * Sets the probability of a state being final. The initial state never is; the last state
+     * is when no other one is, so the graph always has complete paths.
+     *
+     * @param fraction final state probability.
+     * @return these options.
+     */
+    public GraphGenerator finalFraction(double fraction) {
+        this.finalFraction = checkFraction("Final fraction", fraction);
+        return this;
+    }
+
+    /**
+     * Sets the probability of an extra edge going back to the node's level or above, closing a
+     * cycle, rather than to the level below.
+     *
+     * @param density back edge probability.
+     * @return these options.
+     */
+    public GraphGenerator cycleDensity(double density) {
+        this.cycleDensity = checkFraction("Cycle density", density);
+        return this;
+    }
+
+    /**
+     * Sets the size of the labels: the number of variables of each state, besides the final
+     * flag, and the number of parameters of each transition. Variables take turns being numbers,
+     * booleans, sets and functions of records.
+     *
+     * @param variables  state variables.
+     * @param parameters transition parameters.
+     * @return these options.
+     */
+    public GraphGenerator labels(int variables, int parameters) {
+        if (variables < 0 || parameters < 0)
+            throw new IllegalArgumentException(String.format(BAD_LABELS, variables, parameters));
+
+        this.variables = variables;
+        this.parameters = parameters;
+        return this;
+    }
+
+    /**
+     * Sets the random seed.
+     *
+     * @param seed random seed.
+     * @return these options.
+     */
+    public GraphGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Writes the graph as a TLC DOT file.
+     *
+     * @param filePath DOT file path.
+     * @throws IOException when the file cannot be written.
+     */
+    public void write(String filePath) throws IOException {
+        try (Writer out = Files.newBufferedWriter(Path.of(filePath))) {
+            out.write(HEADER);
+            generate(new DotWriter(out));
+            out.write(FOOTER);
+        }
+    }
+
+    /**
+     * Builds the graph in memory, without going through DOT text: the same graph as loading the
+     * file {@link #write(String)} writes. States are parsed on demand.
+     *
+     * @return generated graph.
+     */
+    public StateSpaceGraph build() {
+        GraphBuilder builder = new GraphBuilder(nodes);
+        try {
+            generate(builder);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);  // the builder never writes
+        }
+        return builder.graph();
+    }
+
+    // Generation
+
+    /**
+     * Receives the generated nodes and edges, in the order TLC would describe them.
+     */
+    private interface Sink {
+
+        void node(int node, String label, boolean isFinal) throws IOException;
+
+        void edge(int src, int dst, String transition, String[] parameters) throws IOException;
+    }
+
+    /**
+     * Generates the graph, node by node in BFS order.
+     *
+     * @param sink receiver of the nodes and edges.
+     * @throws IOException when the sink cannot write.
+     */
+    private void generate(Sink sink) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] levelStart = levels();
+        int numLevels = levelStart.length - 1;
+
+        String[] transitions = new String[TRANSITIONS];
+        for (int t = 0; t < TRANSITIONS; t++)
+            transitions[t] = "action" + t;
+
+        StringBuilder label = new StringBuilder();
+        boolean anyFinal = false;
+        sink.node(0, label(label, 0, false, random), false);
+
+        int child = 1;   // next node to reach through a tree edge
+        for (int level = 0; level < numLevels; level++) {
+            for (int node = levelStart[level]; node < levelStart[level + 1]; node++) {
+                int degree = degree(random);
+
+                // Tree edges: each one reaches a new state, described right after
+                int edges = 0;
+                for (; child < nodes && parent(child, levelStart, level) == node;
+                     child++, edges++) {
+                    sink.edge(node, child, transitions[random.nextInt(TRANSITIONS)],
+                            parameters(random));
+                    boolean isFinal = random.nextDouble() < finalFraction
+                            || (child == nodes - 1 && !anyFinal);
+                    anyFinal |= isFinal;
+                    sink.node(child, label(label, child, isFinal, random), isFinal);
+                }
+
+                for (; edges < degree; edges++) {
+                    boolean back = level + 1 == numLevels || random.nextDouble() < cycleDensity;
+                    int dst = back ? random.nextInt(levelStart[level + 1])
+                            : levelStart[level + 1]
+                            + random.nextInt(levelStart[level + 2] - levelStart[level + 1]);
+                    sink.edge(node, dst, transitions[random.nextInt(TRANSITIONS)],
+                            parameters(random));
+                }
+            }
+        }
+    }
+
+    /**
+     * Spreads the nodes over the levels: the initial state alone, then levels as even as
+     * possible.
+     *
+     * @return first node of each level, then the number of nodes.
+     */
+    private int[] levels() {
+        int numLevels = nodes == 1 ? 1 : Math.max(2, Math.min(depth, nodes));
+        int[] levelStart = new int[numLevels + 1];
+        levelStart[1] = 1;
+
+        int rest = nodes - 1, below = numLevels - 1;
+        for (int level = 1; level < numLevels; level++)
+            levelStart[level + 1] = levelStart[level] + rest / below
+                    + (level - 1 < rest % below ? 1 : 0);
+
+        return levelStart;
+    }
+
+    /**
+     * Returns the node of the level above that first reaches a node. Nodes of a level are split
+     * evenly, and in order, among the nodes above.
+     *
+     * @param node       node, below the initial state.
+     * @param levelStart first node of each level.
+     * @param above      level above the node's level.
+     * @return tree parent.
+     */
+    private static int parent(int node, int[] levelStart, int above) {
+        int aboveSize = levelStart[above + 1] - levelStart[above];
+        int size = levelStart[above + 2] - levelStart[above + 1];
+        return levelStart[above] + (int) ((long) (node - levelStart[above + 1]) * aboveSize / size);
+    }
+
+    private int degree(SplittableRandom random) {
+        if (distribution == DegreeDistribution.UNIFORM)
+            return random.nextInt(minDegree, maxDegree + 1);
+
+        // Inverse transform of a continuous power law over [minDegree + 1, infinity)
+        double x = (minDegree + 1)
+                * Math.pow(1 - random.nextDouble(), -1 / (POWER_LAW_EXPONENT - 1));
+        return (int) Math.min(maxDegree, x - 1);
+    }
+
+    private String[] parameters(SplittableRandom random) {
+        String[] values = new String[parameters];
+        for (int i = 0; i < parameters; i++)
+            values[i] = "m" + random.nextInt(VALUES);
+        return values;
+    }
+
+    /**
+     * Writes the label of a state, as TLC writes it in a DOT file. The first variable is the
+     * node index, so labels are distinct.
+     *
+     * @param s       reused buffer.
+     * @param node    node index.
+     * @param isFinal whether the state is final.
+     * @param random  source of randomness.
+     * @return label.
+     */
+    private String label(StringBuilder s, int node, boolean isFinal, SplittableRandom random) {
+        s.setLength(0);
+        s.append("/\\\\ f = ").append(isFinal ? "TRUE" : "FALSE");
+
+        for (int v = 0; v < variables; v++) {
+            s.append("/\\\\ x").append(v).append(" = ");
+            switch (v % 4) {
+                case 0 -> s.append(v == 0 ? node : random.nextInt(100));
+                case 1 -> s.append(random.nextBoolean() ? "TRUE" : "FALSE");
+                case 2 -> s.append("{m").append(random.nextInt(VALUES))
+                        .append(", m").append(random.nextInt(VALUES)).append('}');
+                default -> s.append("(m").append(random.nextInt(VALUES))
+                        .append(" :> [id |-> m").append(random.nextInt(VALUES))
+                        .append(", s |-> ").append(random.nextBoolean() ? "TRUE" : "FALSE")
+                        .append(", c |-> ").append(random.nextInt(10)).append("])");
+            }
+        }
+
+        return s.toString();
+    }
+
+    private static double checkFraction(String name, double fraction) {
+        if (!(fraction >= 0 && fraction <= 1))
+            throw new IllegalArgumentException(String.format(BAD_FRACTION, name, fraction));
+        return fraction;
+    }
+
+    /**
+     * DOT id of a node: a bijective mix of its index, so ids look like TLC's fingerprints and
+     * never collide.
+     *
+     * @param node node index.
+     * @return DOT id.
+     */
+    private static long dotId(int node) {
+        long h = node;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Writes DOT lines.
+     */
+    private static final class DotWriter implements Sink {
+
+        private final Writer out;
+
+        DotWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void node(int node, String label, boolean isFinal) throws IOException {
+            out.write(dotId(node) + " [label=\"" + label + "\"];\n");
+        }
+
+        @Override
+        public void edge(int src, int dst, String transition, String[] parameters)
+                throws IOException {
+            out.write(dotId(src) + " -> " + dotId(dst) + " [label=\"" + transition + "("
+                    + String.join(",", parameters) + EDGE_STYLE);
+        }
+    }
+
+    /**
+     * Builds the graph structures the way the DOT loader does: nodes in declaration order, edges
+     * in description order, and the edge to the super sink where its final state is declared.
+     */
+    private static final class GraphBuilder implements Sink {
+
+        private final int finalState;
+        private final Map<Long, Integer> nodesById;
+        private final BitSet finalStates;
+        private final long[] offsets;       // label position of each node
+        private final int[] lengths;        // label length of each node
+
+        private final List<ByteBuffer> windows = new ArrayList<>();
+        private final List<Long> bounds = new ArrayList<>();
+        private byte[] window = new byte[0];
+        private int used;                   // bytes used in the current window
+        private long position;              // label position of the current window
+
+        private Edge[] edges;
+        private int numEdges;
+        private int numDotEdges;
+        private final EdgeSymbols symbols = new EdgeSymbols();
+
+        GraphBuilder(int nodes) {
+            finalState = nodes;
+            nodesById = new HashMap<>(nodes * 4 / 3 + 1);
+            finalStates = new BitSet(nodes + 1);
+            offsets = new long[nodes + 1];
+            lengths = new int[nodes + 1];
+            offsets[nodes] = -1;  // the super sink has no label
+            edges = new Edge[Math.max(16, nodes * 2)];
+        }
+
+        @Override
+        public void node(int node, String label, boolean isFinal) {
+            nodesById.put(dotId(node), node);
+
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            if (used + bytes.length > window.length)
+                newWindow(bytes.length);
+            System.arraycopy(bytes, 0, window, used, bytes.length);
+            offsets[node] = position + used;
+            lengths[node] = bytes.length;
+            used += bytes.length;
+
+            if (isFinal) {
+                finalStates.set(node);
+                add(DotLoader.sinkEdge(node, finalState, symbols));
+            }
+        }
+
+        @Override
+        public void edge(int src, int dst, String transition, String[] parameters) {
+            add(symbols.edge(src, dst, transition, parameters));
+            numDotEdges++;
+        }
+
+        private void add(Edge edge) {
+            if (numEdges == edges.length)
+                edges = Arrays.copyOf(edges, numEdges * 2);
+            edges[numEdges++] = edge;
+        }
+
+        private void newWindow(int minBytes) {
+            closeWindow();
+            position += used;
+            window = new byte[Math.max(WINDOW_BYTES, minBytes)];
+            used = 0;
+        }
+
+        private void closeWindow() {
+            if (used > 0) {
+                windows.add(ByteBuffer.wrap(window, 0, used).slice());
+                bounds.add(position);
+            }
+        }
+
+        StateSpaceGraph graph() {
+            closeWindow();
+            long[] starts = new long[bounds.size()];
+            for (int w = 0; w < starts.length; w++)
+                starts[w] = bounds.get(w);
+            StateLabels labels = new StateLabels(windows.toArray(new ByteBuffer[0]), starts,
+                    offsets, lengths, STATE_CACHE);
+
+            edges = Arrays.copyOf(edges, numEdges);
+            int[] src = new int[numEdges];
+            int[] dst = new int[numEdges];
+            for (int e = 0; e < numEdges; e++) {
+                src[e] = edges[e].getSrc();
+                dst[e] = edges[e].getDst();
+            }
+            int numNodes = finalState + 1;
+            CsrAdjacency outgoing = CsrAdjacency.build(numNodes, numEdges, src, dst);
+            CsrAdjacency incoming = CsrAdjacency.build(numNodes, numEdges, dst, src);
+
+            return new StateSpaceGraph(nodesById, numDotEdges, edges, symbols, outgoing, incoming,
+                    labels, finalStates);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a loaded state space graph. A snapshot holds the node-id mapping, the edge
+ * columns, both adjacency arrays, an interned table of transitions and parameter tuples, and
+ * the raw state labels. Opening a snapshot maps the file and bulk-copies the columns; states are
+ * parsed from the mapped labels on demand.
+ * <p>
+ * Layout (big-endian): a fixed header, the columns, and the label bytes.
+ * <pre>
+ * header : magic, version, numNodes, numDotEdges, numEdges (ints), labels position (long)
+ * columns: DOT ids (long[numNodes - 1]), final states (int words, long[words]),
+ *          strings (int count, then int length + UTF-8 bytes each),
+ *          parameter tuples (int count, then int arity + int[arity] string ids each),
+ *          edge src, dst, transition and tuple (int[numEdges] each),
+ *          outgoing and incoming adjacency (int[numNodes + 1], int[numEdges], int[numEdges] each),
+ *          label lengths (int[numNodes - 1])
+ * labels : label bytes, in node order
+ * </pre>
+ */
+final class GraphSnapshot {
+
+    private static final int MAGIC = 0x53534731;  // "SSG1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * Integer.BYTES + Long.BYTES;
+    private static final int LABELS_POSITION = 5 * Integer.BYTES;
+    private static final int NULL = -1;           // string id of null parameters
+
+    // Largest region mapped at once
+    private static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+    // Buffer the labels are copied through when written
+    private static final int LABEL_CHUNK = 64 * 1024;
+
+    // Exceptions
+    private static final String NOT_A_SNAPSHOT = "%s is not a state space graph snapshot.";
+    private static final String BAD_VERSION = "Unsupported snapshot version %d.";
+    private static final String TOO_LARGE = "Snapshot columns exceed %d bytes.";
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Writes the graph to a snapshot file.
+     *
+     * @param graph    graph to save.
+     * @param filePath snapshot file path.
+     * @throws IOException when the file cannot be written.
+     */
+    static void write(StateSpaceGraph graph, String filePath) throws IOException {
+        int numNodes = graph.getNumNodes();
+        Edge[] edges = graph.edges();
+
+        // Interning transitions and parameter tuples
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Map<List<String>, Integer> tupleIds = new HashMap<>();
+        List<String[]> tuples = new ArrayList<>();
+        int[] transitions = new int[edges.length];
+        int[] parameters = new int[edges.length];
+
+        for (int e = 0; e < edges.length; e++) {
+            transitions[e] = intern(edges[e].getTransition(), stringIds, strings);
+            String[] tuple = edges[e].parameters();
+            Integer id = tupleIds.putIfAbsent(Arrays.asList(tuple), tuples.size());
+            if (id == null) {
+                id = tuples.size();
+                tuples.add(tuple);
+            }
+            parameters[e] = id;
+        }
+
+        int[][] tupleStrings = new int[tuples.size()][];
+        for (int t = 0; t < tupleStrings.length; t++) {
+            String[] tuple = tuples.get(t);
+            tupleStrings[t] = new int[tuple.length];
+            for (int i = 0; i < tuple.length; i++)
+                tupleStrings[t][i] = tuple[i] == null ? NULL : intern(tuple[i], stringIds, strings);
+        }
+
+        long[] dotIds = new long[numNodes - 1];
+        for (Map.Entry<Long, Integer> node : graph.nodesById().entrySet())
+            dotIds[node.getValue()] = node.getKey();
+
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numNodes);
+            out.writeInt(graph.getNumEdges());
+            out.writeInt(edges.length);
+            out.writeLong(0L);  // labels position, patched below
+
+            for (long id : dotIds)
+                out.writeLong(id);
+
+            long[] finals = graph.finalStates().toLongArray();
+            out.writeInt(finals.length);
+            for (long word : finals)
+                out.writeLong(word);
+
+            out.writeInt(strings.size());
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(tupleStrings.length);
+            for (int[] tuple : tupleStrings) {
+                out.writeInt(tuple.length);
+                writeInts(out, tuple, tuple.length);
+            }
+
+            int[] src = new int[edges.length];
+            int[] dst = new int[edges.length];
+            for (int e = 0; e < edges.length; e++) {
+                src[e] = edges[e].getSrc();
+                dst[e] = edges[e].getDst();
+            }
+            writeInts(out, src, edges.length);
+            writeInts(out, dst, edges.length);
+            writeInts(out, transitions, edges.length);
+            writeInts(out, parameters, edges.length);
+
+            for (CsrAdjacency adjacency : new CsrAdjacency[]{graph.outgoing(), graph.incoming()}) {
+                writeInts(out, adjacency.offsets(), numNodes + 1);
+                writeInts(out, adjacency.targets(), edges.length);
+                writeInts(out, adjacency.edgeIds(), edges.length);
+            }
+
+            StateLabels labels = graph.labels();
+            for (int i = 0; i < numNodes - 1; i++)
+                out.writeInt(labels.labelLength(i));
+
+            out.flush();
+            long labelsPosition = channel.position();
+            if (labelsPosition > MAX_WINDOW)
+                throw new IOException(String.format(TOO_LARGE, MAX_WINDOW));
+
+            // Labels are copied from their mapped windows through one small buffer
+            byte[] chunk = new byte[LABEL_CHUNK];
+            for (int i = 0; i < numNodes - 1; i++) {
+                ByteBuffer label = labels.labelView(i);
+                while (label.hasRemaining()) {
+                    int length = Math.min(label.remaining(), chunk.length);
+                    label.get(chunk, 0, length);
+                    out.write(chunk, 0, length);
+                }
+            }
+            out.flush();
+
+            ByteBuffer position = ByteBuffer.allocate(Long.BYTES).putLong(0, labelsPosition);
+            channel.write(position, LABELS_POSITION);
+        }
+    }
+
+    /**
+     * Opens a snapshot file.
+     *
+     * @param filePath  snapshot file path.
+     * @param cacheSize maximum number of parsed states kept.
+     * @return graph stored in the snapshot.
+     * @throws IOException when the file cannot be read or is not a snapshot.
+     */
+    static StateSpaceGraph read(String filePath, int cacheSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES)
+                throw new IOException(String.format(NOT_A_SNAPSHOT, filePath));
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC)
+                throw new IOException(String.format(NOT_A_SNAPSHOT, filePath));
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException(String.format(BAD_VERSION, version));
+
+            int numNodes = header.getInt();
+            int numDotEdges = header.getInt();
+            int numEdges = header.getInt();
+            long labelsPosition = header.getLong();
+
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                    labelsPosition - HEADER_BYTES);
+
+            long[] dotIds = readLongs(in, numNodes - 1);
+            Map<Long, Integer> nodesById = new HashMap<>(numNodes * 4 / 3 + 1);
+            for (int i = 0; i < dotIds.length; i++)
+                nodesById.put(dotIds[i], i);
+
+            BitSet finalStates = BitSet.valueOf(readLongs(in, in.getInt()));
+
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[in.getInt()];
+                in.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            String[][] tuples = new String[in.getInt()][];
+            for (int t = 0; t < tuples.length; t++) {
+                int[] ids = readInts(in, in.getInt());
+                tuples[t] = new String[ids.length];
+                for (int i = 0; i < ids.length; i++)
+                    tuples[t][i] = ids[i] == NULL ? null : strings[ids[i]];
+            }
+
+            int[] src = readInts(in, numEdges);
+            int[] dst = readInts(in, numEdges);
+            int[] transitions = readInts(in, numEdges);
+            int[] parameters = readInts(in, numEdges);
+            // Strings and tuples are already distinct: each is interned once
+            EdgeSymbols symbols = new EdgeSymbols();
+            String[] internedStrings = new String[strings.length];
+            String[][] internedTuples = new String[tuples.length][];
+            Edge[] edges = new Edge[numEdges];
+            for (int e = 0; e < numEdges; e++) {
+                int t = transitions[e];
+                int p = parameters[e];
+                if (internedStrings[t] == null)
+                    internedStrings[t] = symbols.transition(symbols.internTransition(strings[t]));
+                if (internedTuples[p] == null)
+                    internedTuples[p] = symbols.tuple(symbols.internTuple(tuples[p]));
+                edges[e] = new Edge(src[e], dst[e], internedStrings[t], internedTuples[p]);
+            }
+
+            CsrAdjacency outgoing = CsrAdjacency.of(readInts(in, numNodes + 1),
+                    readInts(in, numEdges), readInts(in, numEdges));
+            CsrAdjacency incoming = CsrAdjacency.of(readInts(in, numNodes + 1),
+                    readInts(in, numEdges), readInts(in, numEdges));
+
+            int[] lengths = Arrays.copyOf(readInts(in, numNodes - 1), numNodes);
+            StateLabels labels = mapLabels(channel, labelsPosition, size, lengths, cacheSize);
+
+            return new StateSpaceGraph(nodesById, numDotEdges, edges, symbols, outgoing, incoming,
+                    labels, finalStates);
+        }
+    }
+
+    /**
+     * Maps the label bytes in windows that never split a label.
+     *
+     * @param channel        snapshot file.
+     * @param labelsPosition position of the first label.
+     * @param size           file size.
+     * @param lengths        label length of each node; the super sink (last) has none.
+     * @param cacheSize      maximum number of parsed states kept.
+     * @return state labels.
+     * @throws IOException when the file cannot be mapped.
+     */
+    private static StateLabels mapLabels(FileChannel channel, long labelsPosition, long size,
+                                         int[] lengths, int cacheSize) throws IOException {
+        long[] offsets = new long[lengths.length];
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(labelsPosition);
+
+        long pos = labelsPosition;
+        for (int i = 0; i + 1 < lengths.length; i++) {
+            if (pos + lengths[i] - bounds.get(bounds.size() - 1) > MAX_WINDOW)
+                bounds.add(pos);
+            offsets[i] = pos;
+            pos += lengths[i];
+        }
+        offsets[lengths.length - 1] = NULL;  // the super sink has no label
+        bounds.add(size);
+
+        ByteBuffer[] windows = new ByteBuffer[bounds.size() - 1];
+        long[] starts = new long[windows.length];
+        for (int w = 0; w < windows.length; w++) {
+            starts[w] = bounds.get(w);
+            windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, starts[w],
+                    bounds.get(w + 1) - starts[w]);
+        }
+
+        return new StateLabels(windows, starts, offsets, lengths, cacheSize);
+    }
+
+    private static int intern(String s, Map<String, Integer> ids, List<String> strings) {
+        Integer id = ids.putIfAbsent(s, strings.size());
+        if (id == null) {
+            id = strings.size();
+            strings.add(s);
+        }
+        return id;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int length)
+            throws IOException {
+        for (int i = 0; i < length; i++)
+            out.writeInt(values[i]);
+    }
+
+    private static int[] readInts(ByteBuffer in, int length) {
+        int[] values = new int[length];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + length * Integer.BYTES);
+        return values;
+    }
+
+    private static long[] readLongs(ByteBuffer in, int length) {
+        long[] values = new long[length];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + length * Long.BYTES);
+        return values;
+    }
+}
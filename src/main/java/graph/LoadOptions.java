@@ -0,0 +1,79 @@
+package graph;
+
+/**
+ * Options for loading a state space graph from a DOT file.
+ */
+public class LoadOptions {
+
+    // Exceptions
+    private static final String BAD_PARALLELISM = "Parallelism must be positive: %d.";
+    private static final String BAD_CACHE_SIZE = "State cache size must be positive: %d.";
+
+    private int parallelism;    // number of workers parsing the DOT file
+    private int stateCache;     // parsed states kept in lazy mode; 0 keeps every state eagerly
+
+    public LoadOptions() {
+        parallelism = 1;
+        stateCache = 0;
+    }
+
+    /**
+     * Sets the number of workers that parse the DOT file. With more than one worker, the file is
+     * split into line-aligned chunks parsed on a fork/join pool; the resulting graph is the same
+     * as the one loaded sequentially.
+     *
+     * @param parallelism number of workers; 1 loads the file in the calling thread.
+     * @return these options.
+     */
+    public LoadOptions parallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException(String.format(BAD_PARALLELISM, parallelism));
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Enables lazy states: the graph keeps only the position of each node's label in the DOT
+     * file and whether it is final. No state is parsed while loading, since finality is read
+     * from the label bytes: a state is parsed the first time it is asked for and kept in a
+     * least-recently-used cache of the given size.
+     *
+     * @param cacheSize maximum number of parsed states kept in memory.
+     * @return these options.
+     */
+    public LoadOptions lazyStates(int cacheSize) {
+        if (cacheSize < 1)
+            throw new IllegalArgumentException(String.format(BAD_CACHE_SIZE, cacheSize));
+
+        this.stateCache = cacheSize;
+        return this;
+    }
+
+    /**
+     * Checks whether states are parsed on demand.
+     *
+     * @return true if states are lazy; false otherwise.
+     */
+    public boolean isLazyStates() {
+        return stateCache > 0;
+    }
+
+    /**
+     * Returns the maximum number of parsed states kept in lazy mode.
+     *
+     * @return state cache size; 0 when states are eager.
+     */
+    public int getStateCacheSize() {
+        return stateCache;
+    }
+
+    /**
+     * Returns the number of workers that parse the DOT file.
+     *
+     * @return parallelism level.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+}
@@ -0,0 +1,175 @@
+package graph;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Immutable sequence of node indexes, backed by a primitive array. Paths compare by their nodes.
+ */
+public final class Path {
+
+    private static final Path EMPTY = new Path(new int[0]);
+
+    private final int[] nodes;
+
+    private Path(int[] nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Returns a path holding a copy of the given nodes.
+     *
+     * @param nodes node indexes, in path order.
+     * @return path.
+     */
+    public static Path of(int... nodes) {
+        return nodes.length == 0 ? EMPTY : new Path(nodes.clone());
+    }
+
+    /**
+     * Returns a path holding the nodes of the given deque, first to last.
+     *
+     * @param path deque of node indexes.
+     * @return path.
+     */
+    public static Path of(Deque<Integer> path) {
+        int[] nodes = new int[path.size()];
+        int i = 0;
+        for (int node : path)
+            nodes[i++] = node;
+        return new Path(nodes);
+    }
+
+    /**
+     * Returns a path backed by the given array, which must no longer be modified.
+     *
+     * @param nodes node indexes, in path order.
+     * @return path.
+     */
+    static Path wrap(int[] nodes) {
+        return new Path(nodes);
+    }
+
+    /**
+     * Returns the number of nodes in the path.
+     *
+     * @return path size.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the node at the given position.
+     *
+     * @param i position in the path.
+     * @return node index.
+     */
+    public int node(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * Returns the first node of the path.
+     *
+     * @return node index.
+     */
+    public int first() {
+        return nodes[0];
+    }
+
+    /**
+     * Returns the last node of the path.
+     *
+     * @return node index.
+     */
+    public int last() {
+        return nodes[nodes.length - 1];
+    }
+
+    /**
+     * Returns this path followed by the given node.
+     *
+     * @param node node to append.
+     * @return new path.
+     */
+    public Path append(int node) {
+        int[] extended = Arrays.copyOf(nodes, nodes.length + 1);
+        extended[nodes.length] = node;
+        return new Path(extended);
+    }
+
+    /**
+     * Returns the given node followed by this path.
+     *
+     * @param node node to prepend.
+     * @return new path.
+     */
+    public Path prepend(int node) {
+        int[] extended = new int[nodes.length + 1];
+        extended[0] = node;
+        System.arraycopy(nodes, 0, extended, 1, nodes.length);
+        return new Path(extended);
+    }
+
+    /**
+     * Returns this path followed by the given one.
+     *
+     * @param suffix path to append.
+     * @return new path.
+     */
+    public Path concat(Path suffix) {
+        int[] joined = Arrays.copyOf(nodes, nodes.length + suffix.nodes.length);
+        System.arraycopy(suffix.nodes, 0, joined, nodes.length, suffix.nodes.length);
+        return new Path(joined);
+    }
+
+    /**
+     * Returns this path without its last node.
+     *
+     * @return new path.
+     */
+    public Path withoutLast() {
+        return new Path(Arrays.copyOf(nodes, nodes.length - 1));
+    }
+
+    /**
+     * Returns a copy of the path's nodes.
+     *
+     * @return node indexes, in path order.
+     */
+    public int[] toArray() {
+        return nodes.clone();
+    }
+
+    /**
+     * Returns the path as a deque, first node at the head.
+     *
+     * @return deque of node indexes.
+     */
+    public Deque<Integer> toDeque() {
+        Deque<Integer> path = new ArrayDeque<>(nodes.length);
+        for (int node : nodes)
+            path.add(node);
+        return path;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Path other && Arrays.equals(nodes, other.nodes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(nodes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("{");
+        for (int i = 0; i < nodes.length; i++)
+            s.append(i == 0 ? "" : ", ").append(nodes[i]);
+        return s.append("}").toString();
+    }
+}
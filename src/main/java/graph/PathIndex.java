@@ -0,0 +1,395 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact description of the complete paths produced by the two BFS traversals of the graph:
+ * the forward one from the initial state and the backward one from the super sink. Paths are
+ * never stored; they are rebuilt on demand from
+ * <ul>
+ *     <li>the forward BFS tree, as parent pointers (the path up to a node);</li>
+ *     <li>the edges that reach an already found node, in BFS order; those reaching the super
+ *     sink end a complete path, the others an incomplete one;</li>
+ *     <li>the suffixes of every node, as segments. When the backward BFS goes through an edge
+ *     (parent, child), the parent gets one new suffix per suffix the child has at that moment.
+ *     A segment records that event as (child, number of child segments at that moment).</li>
+ * </ul>
+ * The index takes O(nodes + edges) memory; enumerating the paths takes memory proportional to
+ * the path length.
+ */
+final class PathIndex {
+
+    private static final int NONE = -1;
+
+    final int initial;
+    final int finalState;
+
+    // Forward BFS
+    final int[] parent;         // BFS tree parent, NONE for the initial state
+    final int[] depth;          // nodes on the path up to a node, 0 if not found or a dead end
+    final int[] completes;      // parents of the edges to the super sink, in BFS order
+    final int[] cutFrom;        // edges to already found nodes, in BFS order
+    final int[] cutTo;
+
+    // Backward BFS
+    final int[] segStart;       // segments of node v: [segStart[v], segStart[v + 1])
+    final int[] segChild;       // child of each segment
+    final int[] segPrefix;      // number of child segments the segment covers
+    final int[] segOwner;       // node owning each segment
+    final int[] segCreation;    // segments in the order the backward BFS created them
+
+    private PathIndex(int initial, int finalState, int[] parent, int[] depth, int[] completes,
+                      int[] cutFrom, int[] cutTo, int[] segStart, int[] segChild, int[] segPrefix,
+                      int[] segOwner, int[] segCreation) {
+        this.initial = initial;
+        this.finalState = finalState;
+        this.parent = parent;
+        this.depth = depth;
+        this.completes = completes;
+        this.cutFrom = cutFrom;
+        this.cutTo = cutTo;
+        this.segStart = segStart;
+        this.segChild = segChild;
+        this.segPrefix = segPrefix;
+        this.segOwner = segOwner;
+        this.segCreation = segCreation;
+    }
+
+    /**
+     * Runs both BFS traversals and records their outcome.
+     *
+     * @param outgoing   outgoing adjacency.
+     * @param incoming   incoming adjacency.
+     * @param initial    initial state index.
+     * @param finalState super sink index.
+     * @return path index.
+     */
+    static PathIndex build(CsrAdjacency outgoing, CsrAdjacency incoming, int initial,
+                           int finalState) {
+        return build(outgoing, incoming, initial, finalState,
+                DistanceIndex.build(outgoing, incoming, initial, finalState));
+    }
+
+    /**
+     * Runs both BFS traversals and records their outcome. The forward BFS skips the nodes that
+     * reach no final state: they end no complete path, and the nodes they lead to are dead ends
+     * too, so the other nodes keep their BFS tree and the paths their order.
+     *
+     * @param outgoing   outgoing adjacency.
+     * @param incoming   incoming adjacency.
+     * @param initial    initial state index.
+     * @param finalState super sink index.
+     * @param distances  distances of the graph.
+     * @return path index.
+     */
+    static PathIndex build(CsrAdjacency outgoing, CsrAdjacency incoming, int initial,
+                           int finalState, DistanceIndex distances) {
+        int numNodes = outgoing.numNodes();
+
+        // Forward BFS from the initial state
+        int[] parent = new int[numNodes];
+        int[] depth = new int[numNodes];
+        IntList completes = new IntList();
+        IntList cutFrom = new IntList();
+        IntList cutTo = new IntList();
+
+        boolean[] found = new boolean[numNodes];
+        found[finalState] = true;
+        int[] fifo = new int[numNodes];
+        int head = 0, tail = 0;
+
+        fifo[tail++] = initial;
+        found[initial] = true;
+        parent[initial] = NONE;
+        depth[initial] = 1;
+
+        while (head < tail) {
+            int p = fifo[head++];
+
+            for (int i = outgoing.start(p); i < outgoing.end(p); i++) {
+                int child = outgoing.target(i);
+
+                if (!distances.reachesSink(child))
+                    continue;
+                if (!found[child]) {
+                    fifo[tail++] = child;
+                    found[child] = true;
+                    parent[child] = p;
+                    depth[child] = depth[p] + 1;
+                } else if (child == finalState) {
+                    completes.add(p);
+                } else {
+                    cutFrom.add(p);
+                    cutTo.add(child);
+                }
+            }
+        }
+
+        // Backward BFS from the super sink
+        IntList segOwner = new IntList();
+        IntList segChild = new IntList();
+        IntList segPrefix = new IntList();
+        int[] numSegments = new int[numNodes];
+
+        Arrays.fill(found, false);
+        found[initial] = true;
+        head = tail = 0;
+        fifo[tail++] = finalState;
+        found[finalState] = true;
+
+        while (head < tail) {
+            int child = fifo[head++];
+
+            for (int i = incoming.start(child); i < incoming.end(child); i++) {
+                int p = incoming.target(i);
+
+                segOwner.add(p);
+                segChild.add(child);
+                segPrefix.add(numSegments[child]);
+                numSegments[p]++;
+
+                if (!found[p]) {
+                    fifo[tail++] = p;
+                    found[p] = true;
+                }
+            }
+        }
+
+        // Grouping the segments by owner, keeping their order
+        int[] segStart = new int[numNodes + 1];
+        for (int s = 0; s < segOwner.size(); s++)
+            segStart[segOwner.get(s) + 1]++;
+        for (int v = 0; v < numNodes; v++)
+            segStart[v + 1] += segStart[v];
+
+        int[] next = Arrays.copyOf(segStart, numNodes);
+        int[] children = new int[segOwner.size()];
+        int[] prefixes = new int[segOwner.size()];
+        int[] owners = new int[segOwner.size()];
+        int[] creation = new int[segOwner.size()];
+        for (int s = 0; s < segOwner.size(); s++) {
+            int slot = next[segOwner.get(s)]++;
+            children[slot] = segChild.get(s);
+            prefixes[slot] = segPrefix.get(s);
+            owners[slot] = segOwner.get(s);
+            creation[s] = slot;
+        }
+
+        return new PathIndex(initial, finalState, parent, depth, completes.toArray(),
+                cutFrom.toArray(), cutTo.toArray(), segStart, children, prefixes, owners,
+                creation);
+    }
+
+    /**
+     * Returns the number of segments of a given node.
+     *
+     * @param node node index.
+     * @return number of segments.
+     */
+    int numSegments(int node) {
+        return segStart[node + 1] - segStart[node];
+    }
+
+    /**
+     * Writes the forward BFS tree path up to a node at the start of the given buffer.
+     *
+     * @param node last node of the prefix.
+     * @param path buffer, with room for at least depth[node] nodes.
+     * @return prefix length.
+     */
+    int prefix(int node, int[] path) {
+        int size = depth[node];
+        for (int i = size - 1, v = node; i >= 0; i--, v = parent[v])
+            path[i] = v;
+        return size;
+    }
+
+    /**
+     * Visits every complete path, in the same order as CompletePaths lists them: first the paths
+     * the forward BFS completes, then the completions of each incomplete path.
+     *
+     * @param visitor path visitor; returning false stops the enumeration.
+     */
+    void forEach(PathVisitor visitor) {
+        Cursor cursor = new Cursor();
+        while (cursor.advance())
+            if (!visitor.visit(cursor.path, cursor.length))
+                return;
+    }
+
+    /**
+     * Returns an iterator over the complete paths, in the same order as {@link #forEach}.
+     *
+     * @return path iterator.
+     */
+    Iterator<Path> iterator() {
+        return new Iterator<>() {
+            private final Cursor cursor = new Cursor();
+            private boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready)
+                    ready = cursor.advance();
+                return ready;
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                ready = false;
+                return Path.wrap(Arrays.copyOf(cursor.path, cursor.length));
+            }
+        };
+    }
+
+    /**
+     * Enumeration state: a position in the list of BFS completes and cut edges, plus a
+     * depth-first walk over the suffix segments of the current cut edge.
+     */
+    private final class Cursor {
+
+        private int[] path = new int[16];
+        private int length;
+
+        private int complete;           // next BFS complete to emit
+        private int cut = -1;           // cut edge being completed
+        private int base;               // path position of the cut edge's child
+
+        // Suffix walk: level l sits at path position base + l
+        private int[] nextSegment = new int[16];
+        private int[] endSegment = new int[16];
+        private int level = -1;
+
+        /**
+         * Moves to the next complete path.
+         *
+         * @return true if there is one; false when every path has been enumerated.
+         */
+        boolean advance() {
+            if (complete < completes.length) {
+                length = prefix(completes[complete++]);
+                append(length++, finalState);
+                return true;
+            }
+
+            while (true) {
+                if (level < 0 && !startNextCut())
+                    return false;
+
+                if (descend())
+                    return true;
+            }
+        }
+
+        /**
+         * Starts the suffix walk of the next cut edge.
+         *
+         * @return false if there are no more cut edges.
+         */
+        private boolean startNextCut() {
+            if (++cut >= cutFrom.length)
+                return false;
+
+            base = prefix(cutFrom[cut]);
+            enter(0, cutTo[cut], segStart[cutTo[cut] + 1] - segStart[cutTo[cut]]);
+            return true;
+        }
+
+        /**
+         * Walks the suffix segments until the super sink is reached.
+         *
+         * @return true when a path is complete; false when the walk of this cut edge is over.
+         */
+        private boolean descend() {
+            while (level >= 0) {
+                if (nextSegment[level] < endSegment[level]) {
+                    int s = nextSegment[level]++;
+                    if (enter(level + 1, segChild[s], segPrefix[s]))
+                        return true;
+                } else {
+                    level--;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Places a node at the given level of the suffix walk.
+         *
+         * @param at       walk level.
+         * @param node     node to place.
+         * @param segments number of the node's segments to walk.
+         * @return true if the node is the super sink, completing a path.
+         */
+        private boolean enter(int at, int node, int segments) {
+            append(base + at, node);
+
+            if (node == finalState) {
+                length = base + at + 1;
+                level = at - 1;
+                return true;
+            }
+
+            if (at == nextSegment.length) {
+                nextSegment = Arrays.copyOf(nextSegment, at * 2);
+                endSegment = Arrays.copyOf(endSegment, at * 2);
+            }
+            nextSegment[at] = segStart[node];
+            endSegment[at] = segStart[node] + segments;
+            level = at;
+
+            return false;
+        }
+
+        /**
+         * Writes the forward BFS tree path up to a node at the start of the path buffer.
+         *
+         * @param node last node of the prefix.
+         * @return prefix length.
+         */
+        private int prefix(int node) {
+            int size = depth[node];
+            for (int i = size - 1, v = node; i >= 0; i--, v = parent[v])
+                append(i, v);
+            return size;
+        }
+
+        private void append(int at, int node) {
+            if (at >= path.length)
+                path = Arrays.copyOf(path, Math.max(at + 1, path.length * 2));
+            path[at] = node;
+        }
+    }
+
+    /**
+     * Growable list of primitive ints.
+     */
+    static final class IntList {
+
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int get(int idx) {
+            return values[idx];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Shortest path queries between any two nodes of a graph: single shortest paths by bidirectional
+ * BFS, and the k shortest loopless paths by Yen's algorithm. Paths are sequences of nodes; their
+ * length is their number of edges.
+ * <p>
+ * A BFS works on scratch arrays allocated once per query object and never cleared: each search
+ * stamps the nodes it visits, so a distance query allocates nothing. A query object is not
+ * thread-safe: use one per thread. It answers on the graph as it was when created; ask the
+ * graph for another one after a refresh.
+ */
+public final class PathQueries {
+
+    private static final int NONE = -1;
+
+    // Exceptions
+    private static final String BAD_NODE = "Node out of range: %d.";
+    private static final String BAD_K = "Number of paths must be positive: %d.";
+
+    private final CsrAdjacency outgoing;
+    private final CsrAdjacency incoming;
+    private final int initial;
+    private final int finalState;
+
+    // Scratch of the bidirectional BFS: nodes visited by the current search hold its stamp
+    private final int[] forwardMark;
+    private final int[] backwardMark;
+    private final int[] forwardDist;    // edges from the source
+    private final int[] backwardDist;   // edges to the destination
+    private final int[] previous;       // predecessor towards the source
+    private final int[] next;           // successor towards the destination
+    private final int[] forwardQueue;
+    private final int[] backwardQueue;
+    private int stamp;
+
+    // Yen's spur searches: nodes of the root path, and edges leaving the spur node, are blocked
+    private final int[] blockedNode;
+    private final int[] blockedNext;
+    private int spur = NONE;
+    private int blockStamp;
+
+    /**
+     * Creates the queries of a graph.
+     *
+     * @param outgoing   outgoing adjacency.
+     * @param incoming   incoming adjacency.
+     * @param initial    initial state index.
+     * @param finalState super sink index.
+     */
+    PathQueries(CsrAdjacency outgoing, CsrAdjacency incoming, int initial, int finalState) {
+        this.outgoing = outgoing;
+        this.incoming = incoming;
+        this.initial = initial;
+        this.finalState = finalState;
+
+        int numNodes = outgoing.numNodes();
+        forwardMark = new int[numNodes];
+        backwardMark = new int[numNodes];
+        forwardDist = new int[numNodes];
+        backwardDist = new int[numNodes];
+        previous = new int[numNodes];
+        next = new int[numNodes];
+        forwardQueue = new int[numNodes];
+        backwardQueue = new int[numNodes];
+        blockedNode = new int[numNodes];
+        blockedNext = new int[numNodes];
+    }
+
+    /**
+     * Returns the length of a shortest path between two nodes, without building it.
+     *
+     * @param src source node.
+     * @param dst destination node.
+     * @return number of edges; -1 if dst cannot be reached from src.
+     */
+    public int distance(int src, int dst) {
+        checkNode(src);
+        checkNode(dst);
+
+        int meet = search(src, dst);
+        return meet == NONE ? NONE : forwardDist[meet] + backwardDist[meet];
+    }
+
+    /**
+     * Returns a shortest path between two nodes.
+     *
+     * @param src source node.
+     * @param dst destination node.
+     * @return shortest path, from src to dst; null if dst cannot be reached from src.
+     */
+    public Path shortestPath(int src, int dst) {
+        checkNode(src);
+        checkNode(dst);
+
+        int meet = search(src, dst);
+        return meet == NONE ? null : Path.wrap(pathThrough(meet));
+    }
+
+    /**
+     * Returns the k shortest loopless paths between two nodes (Yen's algorithm). Each path
+     * after the first deviates from an earlier one at some node, its spur node, and is completed
+     * from there by a shortest path avoiding the earlier deviations.
+     *
+     * @param src source node.
+     * @param dst destination node.
+     * @param k   number of paths.
+     * @return up to k distinct paths from src to dst, shortest first.
+     */
+    public List<Path> shortestPaths(int src, int dst, int k) {
+        checkNode(src);
+        checkNode(dst);
+        if (k < 1)
+            throw new IllegalArgumentException(String.format(BAD_K, k));
+
+        List<int[]> found = new ArrayList<>();
+        int meet = search(src, dst);
+        if (meet != NONE)
+            found.add(pathThrough(meet));
+
+        // Candidates, by length then in order of discovery
+        List<int[]> candidates = new ArrayList<>();
+        Set<Path> seen = new HashSet<>();
+        if (!found.isEmpty())
+            seen.add(Path.wrap(found.get(0)));
+
+        while (!found.isEmpty() && found.size() < k) {
+            int[] last = found.get(found.size() - 1);
+            for (int i = 0; i + 1 < last.length; i++) {
+                blockRoot(found, last, i);
+                meet = search(last[i], dst);
+                if (meet == NONE)
+                    continue;
+
+                int[] spurPath = pathThrough(meet);
+                int[] candidate = Arrays.copyOf(last, i + spurPath.length);
+                System.arraycopy(spurPath, 0, candidate, i, spurPath.length);
+                if (seen.add(Path.wrap(candidate)))
+                    candidates.add(candidate);
+            }
+            spur = NONE;
+
+            if (candidates.isEmpty())
+                break;
+            int shortest = 0;
+            for (int c = 1; c < candidates.size(); c++)
+                if (candidates.get(c).length < candidates.get(shortest).length)
+                    shortest = c;
+            found.add(candidates.remove(shortest));
+        }
+
+        List<Path> paths = new ArrayList<>(found.size());
+        for (int[] path : found)
+            paths.add(Path.wrap(path));
+        return paths;
+    }
+
+    /**
+     * Returns the k shortest paths from the initial state to the super sink node that go
+     * through a given node: a loopless path to the node followed by a loopless path from it.
+     *
+     * @param via node to go through.
+     * @param k   number of paths.
+     * @return up to k distinct complete paths through via, shortest first.
+     */
+    public List<Path> shortestPathsThrough(int via, int k) {
+        List<Path> prefixes = shortestPaths(initial, via, k);
+        List<Path> suffixes = shortestPaths(via, finalState, k);
+        List<Path> paths = new ArrayList<>();
+        if (prefixes.isEmpty() || suffixes.isEmpty())
+            return paths;
+
+        // Both lists are sorted by size: merge their pairs by total size
+        Comparator<int[]> bySize = Comparator.comparingInt(
+                pair -> prefixes.get(pair[0]).size() + suffixes.get(pair[1]).size());
+        PriorityQueue<int[]> pairs = new PriorityQueue<>(bySize);
+        Set<Long> queued = new HashSet<>();
+        pairs.add(new int[] {0, 0});
+        queued.add(0L);
+
+        while (paths.size() < k && !pairs.isEmpty()) {
+            int[] pair = pairs.poll();
+            Path prefix = prefixes.get(pair[0]);
+            Path suffix = suffixes.get(pair[1]);
+            int[] nodes = Arrays.copyOf(prefix.toArray(), prefix.size() + suffix.size() - 1);
+            for (int i = 1; i < suffix.size(); i++)
+                nodes[prefix.size() + i - 1] = suffix.node(i);
+            paths.add(Path.wrap(nodes));
+
+            if (pair[0] + 1 < prefixes.size() && queued.add((long) (pair[0] + 1) << 32 | pair[1]))
+                pairs.add(new int[] {pair[0] + 1, pair[1]});
+            if (pair[1] + 1 < suffixes.size() && queued.add((long) pair[0] << 32 | (pair[1] + 1)))
+                pairs.add(new int[] {pair[0], pair[1] + 1});
+        }
+        return paths;
+    }
+
+    /**
+     * Blocks, for the next search, the nodes of a path's root before the spur node and the edges
+     * leaving the spur node along every found path sharing that root.
+     *
+     * @param found paths found so far.
+     * @param path  path being deviated from.
+     * @param at    position of the spur node in the path.
+     */
+    private void blockRoot(List<int[]> found, int[] path, int at) {
+        blockStamp++;
+        if (blockStamp == Integer.MAX_VALUE) {
+            Arrays.fill(blockedNode, 0);
+            Arrays.fill(blockedNext, 0);
+            blockStamp = 1;
+        }
+
+        spur = path[at];
+        for (int i = 0; i < at; i++)
+            blockedNode[path[i]] = blockStamp;
+        for (int[] other : found)
+            if (other.length > at + 1 && Arrays.equals(other, 0, at + 1, path, 0, at + 1))
+                blockedNext[other[at + 1]] = blockStamp;
+    }
+
+    private boolean blocked(int node) {
+        return spur != NONE && blockedNode[node] == blockStamp;
+    }
+
+    private boolean blocked(int src, int dst) {
+        return src == spur && blockedNext[dst] == blockStamp;
+    }
+
+    /**
+     * Searches a shortest path by BFS from both ends, expanding the smaller frontier one level at
+     * a time. Once a level reaches nodes the other side has found, the best of them is a meeting
+     * node of a shortest path.
+     *
+     * @param src source node.
+     * @param dst destination node.
+     * @return meeting node; NONE if dst cannot be reached from src.
+     */
+    private int search(int src, int dst) {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(forwardMark, 0);
+            Arrays.fill(backwardMark, 0);
+            stamp = 1;
+        }
+
+        forwardMark[src] = stamp;
+        forwardDist[src] = 0;
+        previous[src] = NONE;
+        backwardMark[dst] = stamp;
+        backwardDist[dst] = 0;
+        next[dst] = NONE;
+        if (src == dst)
+            return src;
+
+        int forwardHead = 0, forwardTail = 0, backwardHead = 0, backwardTail = 0;
+        forwardQueue[forwardTail++] = src;
+        backwardQueue[backwardTail++] = dst;
+
+        while (forwardHead < forwardTail && backwardHead < backwardTail) {
+            int meet = NONE, best = Integer.MAX_VALUE;
+
+            if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+                for (int levelEnd = forwardTail; forwardHead < levelEnd; ) {
+                    int u = forwardQueue[forwardHead++];
+                    for (int slot = outgoing.start(u); slot < outgoing.end(u); slot++) {
+                        int v = outgoing.target(slot);
+                        if (forwardMark[v] == stamp || blocked(v) || blocked(u, v))
+                            continue;
+
+                        forwardMark[v] = stamp;
+                        forwardDist[v] = forwardDist[u] + 1;
+                        previous[v] = u;
+                        forwardQueue[forwardTail++] = v;
+                        if (backwardMark[v] == stamp && forwardDist[v] + backwardDist[v] < best) {
+                            best = forwardDist[v] + backwardDist[v];
+                            meet = v;
+                        }
+                    }
+                }
+            } else {
+                for (int levelEnd = backwardTail; backwardHead < levelEnd; ) {
+                    int v = backwardQueue[backwardHead++];
+                    for (int slot = incoming.start(v); slot < incoming.end(v); slot++) {
+                        int u = incoming.target(slot);
+                        if (backwardMark[u] == stamp || blocked(u) || blocked(u, v))
+                            continue;
+
+                        backwardMark[u] = stamp;
+                        backwardDist[u] = backwardDist[v] + 1;
+                        next[u] = v;
+                        backwardQueue[backwardTail++] = u;
+                        if (forwardMark[u] == stamp && forwardDist[u] + backwardDist[u] < best) {
+                            best = forwardDist[u] + backwardDist[u];
+                            meet = u;
+                        }
+                    }
+                }
+            }
+
+            if (meet != NONE)
+                return meet;
+        }
+        return NONE;
+    }
+
+    /**
+     * Builds the path found by the last search through its meeting node.
+     *
+     * @param meet meeting node.
+     * @return path nodes, from the source to the destination.
+     */
+    private int[] pathThrough(int meet) {
+        int[] nodes = new int[forwardDist[meet] + backwardDist[meet] + 1];
+        int at = forwardDist[meet];
+        for (int node = meet; node != NONE; node = previous[node])
+            nodes[at--] = node;
+        at = forwardDist[meet];
+        for (int node = next[meet]; node != NONE; node = next[node])
+            nodes[++at] = node;
+        return nodes;
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= forwardMark.length)
+            throw new IllegalArgumentException(String.format(BAD_NODE, node));
+    }
+}
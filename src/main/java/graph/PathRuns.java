@@ -0,0 +1,261 @@
+package graph;
+
+import pruning.PathStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Paths written as compact binary runs, for path collections too large for the heap. Paths are
+ * encoded in a memory buffer; once the buffer exceeds the memory budget it is written to a run
+ * file and emptied, so memory stays bounded by the budget whatever the number of paths. Paths are
+ * read back by streaming the runs in order, then the buffer.
+ * <p>
+ * Each path is stored as varints: its size, its first node, then the zigzag-encoded difference of
+ * each node with the previous one. Run files are deleted when the runs are closed.
+ */
+public final class PathRuns implements Closeable {
+
+    private static final String RUN_PREFIX = "paths";
+    private static final String RUN_SUFFIX = ".run";
+
+    // Bytes read at a time from a run file
+    private static final int READ_BUFFER = 1 << 16;
+
+    // Initial and largest size of the memory buffer; larger budgets spill at the largest size
+    private static final int INITIAL_BUFFER = 1 << 12;
+    private static final int MAX_BUFFER = 1 << 30;
+
+    // Largest varint encoding of an int
+    private static final int MAX_VARINT = 5;
+
+    // Exceptions
+    private static final String BAD_BUDGET = "Path memory budget must be positive: %d.";
+    private static final String TRUNCATED = "Path run %s is truncated.";
+
+    private final long memoryBudget;
+    private final java.nio.file.Path directory;
+    private final List<java.nio.file.Path> runs = new ArrayList<>();
+    private final PathStats stats = new PathStats();
+
+    private byte[] buffer = new byte[INITIAL_BUFFER];
+    private int length;             // bytes of the buffer in use
+    private long spilledBytes;      // bytes written to run files
+
+    /**
+     * Creates empty runs.
+     *
+     * @param memoryBudget bytes of encoded paths kept in memory before they are written to a run.
+     * @param directory    directory of the run files.
+     */
+    PathRuns(long memoryBudget, java.nio.file.Path directory) {
+        if (memoryBudget < 1)
+            throw new IllegalArgumentException(String.format(BAD_BUDGET, memoryBudget));
+
+        this.memoryBudget = Math.min(memoryBudget, MAX_BUFFER);
+        this.directory = directory;
+    }
+
+    /**
+     * Adds a path, writing the buffer to a new run when it exceeds the memory budget.
+     *
+     * @param path   buffer whose first length positions hold the path's nodes.
+     * @param length number of nodes in the path.
+     * @throws UncheckedIOException when a run cannot be written.
+     */
+    void add(int[] path, int length) {
+        int needed = this.length + (length + 1) * MAX_VARINT;
+        if (needed > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+
+        int at = putVarint(this.length, length);
+        int previous = 0;
+        for (int i = 0; i < length; i++) {
+            int delta = path[i] - previous;
+            at = putVarint(at, i == 0 ? path[i] : (delta << 1) ^ (delta >> 31));
+            previous = path[i];
+        }
+        this.length = at;
+        stats.accept(length);
+
+        if (this.length >= memoryBudget)
+            spill();
+    }
+
+    /**
+     * Visits every path, in the order they were added. The visitor can stop early.
+     *
+     * @param visitor path visitor.
+     * @throws UncheckedIOException when a run cannot be read.
+     */
+    public void forEach(PathVisitor visitor) {
+        Decoder decoder = new Decoder();
+        for (java.nio.file.Path run : runs) {
+            try (InputStream in = Files.newInputStream(run)) {
+                if (!decoder.visitAll(in, visitor))
+                    return;
+                if (decoder.pending > 0)
+                    throw new IOException(String.format(TRUNCATED, run));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        decoder.visit(buffer, 0, length, visitor);
+    }
+
+    /**
+     * Returns the size statistics of the paths added.
+     *
+     * @return path statistics.
+     */
+    public PathStats stats() {
+        return stats;
+    }
+
+    /**
+     * Returns the number of paths added.
+     *
+     * @return number of paths.
+     */
+    public long size() {
+        return stats.count();
+    }
+
+    /**
+     * Returns the number of run files written.
+     *
+     * @return number of runs.
+     */
+    public int numRuns() {
+        return runs.size();
+    }
+
+    /**
+     * Returns the number of bytes written to run files.
+     *
+     * @return spilled bytes.
+     */
+    public long spilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * Deletes the run files.
+     *
+     * @throws IOException when a run file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        for (java.nio.file.Path run : runs)
+            Files.deleteIfExists(run);
+        runs.clear();
+        buffer = new byte[0];
+        length = 0;
+    }
+
+    /**
+     * Writes the buffer to a new run file and empties it.
+     */
+    private void spill() {
+        try {
+            java.nio.file.Path run = Files.createTempFile(directory, RUN_PREFIX, RUN_SUFFIX);
+            runs.add(run);
+            try (OutputStream out = Files.newOutputStream(run)) {
+                out.write(buffer, 0, length);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        spilledBytes += length;
+        length = 0;
+    }
+
+    private int putVarint(int at, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer[at++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        buffer[at++] = (byte) value;
+        return at;
+    }
+
+    /**
+     * Decodes paths from consecutive blocks of bytes. A path may span two blocks: the varints
+     * read so far are kept until the next block completes it.
+     */
+    private static final class Decoder {
+
+        private int[] path = new int[16];
+        private int size = -1;      // size of the path being decoded, -1 before it is read
+        private int decoded;        // nodes of the path decoded so far
+        private int value;          // varint being decoded
+        private int shift;
+        private int pending;        // bytes of an unfinished path
+
+        /**
+         * Visits the paths of a whole stream.
+         *
+         * @param in      stream of encoded paths.
+         * @param visitor path visitor.
+         * @return true if every path was visited; false if the visitor stopped.
+         * @throws IOException when the stream cannot be read.
+         */
+        boolean visitAll(InputStream in, PathVisitor visitor) throws IOException {
+            byte[] block = new byte[READ_BUFFER];
+            for (int read; (read = in.read(block)) > 0; )
+                if (!visit(block, 0, read, visitor))
+                    return false;
+            return true;
+        }
+
+        /**
+         * Visits the paths completed by a block of bytes.
+         *
+         * @param bytes   encoded paths.
+         * @param from    first byte.
+         * @param to      byte following the last one (exclusive).
+         * @param visitor path visitor.
+         * @return true to continue with the next block; false if the visitor stopped.
+         */
+        boolean visit(byte[] bytes, int from, int to, PathVisitor visitor) {
+            for (int i = from; i < to; i++) {
+                byte b = bytes[i];
+                value |= (b & 0x7f) << shift;
+                pending++;
+                if (b < 0) {
+                    shift += 7;
+                    continue;
+                }
+
+                int v = value;
+                value = 0;
+                shift = 0;
+                if (size < 0) {
+                    size = v;
+                    if (size > path.length)
+                        path = new int[Math.max(size, path.length * 2)];
+                } else {
+                    path[decoded] = decoded == 0 ? v : path[decoded - 1] + ((v >>> 1) ^ -(v & 1));
+                    decoded++;
+                }
+
+                if (decoded == size) {
+                    int length = size;
+                    size = -1;
+                    decoded = 0;
+                    pending = 0;
+                    if (!visitor.visit(path, length))
+                        return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws random complete paths without enumerating them. The suffix segments of the path index
+ * form a DAG (a segment only refers to segments created before it), so the number of suffixes of
+ * every segment prefix, in total and by length, is counted once with dynamic programming. A path
+ * is then drawn top-down: pick a BFS complete or an incomplete path in proportion to its number of
+ * completions, then pick each successor segment in proportion to its count.
+ * <p>
+ * Counting takes O(S * L) time and memory, S being the number of segments (one per edge reached by
+ * the backward BFS) and L the path size range; each path takes O(L * log(out-degree)) to draw.
+ * Paths are counted with their multiplicity, i.e. as CompletePaths lists them.
+ */
+public final class PathSampler {
+
+    /**
+     * Probability distribution of the sampled paths.
+     */
+    public enum Distribution {
+        /**
+         * Picks a path size with probability proportional to the number of paths of that size,
+         * then a path of that size uniformly, as PathPruner.samplePaths does.
+         */
+        SIZE_FREQUENCY,
+        /**
+         * Picks every path with the same probability.
+         */
+        UNIFORM
+    }
+
+    // Exceptions
+    private static final String TOO_MANY_PATHS = "The graph has more than %d paths.";
+    private static final String NO_PATHS = "The graph has no complete paths.";
+    private static final String BAD_SAMPLES = "The number of samples must not be negative.";
+
+    private final PathIndex index;
+    private final int numTops;          // BFS completes followed by incomplete paths
+
+    // Path counts: cumulative over the segments of a node, up to and including each segment
+    private final long[] segTotal;      // suffixes in total
+    private final int[] histLo;         // shortest suffix size counted in the segment histogram
+    private final int[] histSize;       // number of suffix sizes in the segment histogram
+    private final int[] histFrom;       // histogram position in the pool
+    private long[] histPool;            // suffixes by size
+
+    // Top-level choices
+    private final long[] topTotal;      // cumulative number of paths of each top-level choice
+    private final int minSize;          // shortest path size
+    private final long[] sizeTotal;     // cumulative number of paths by size, from minSize
+    private final int[] sizeStart;      // top-level choices of size s: [sizeStart[s], sizeStart[s + 1])
+    private final int[] sizeTop;        // top-level choice
+    private final long[] sizeCum;       // cumulative number of paths of the size among the choices
+
+    /**
+     * Counts the paths of the given index.
+     *
+     * @param index path index.
+     * @throws IllegalStateException when there are more than Long.MAX_VALUE paths.
+     */
+    PathSampler(PathIndex index) {
+        this.index = index;
+        int numSegments = index.segChild.length;
+        numTops = index.completes.length + index.cutFrom.length;
+
+        segTotal = new long[numSegments];
+        histLo = new int[numSegments];
+        histSize = new int[numSegments];
+        histFrom = new int[numSegments];
+        histPool = new long[Math.max(16, numSegments * 4)];
+        int poolSize = 0;
+
+        try {
+            // Segments in creation order: a child's counts are always known before they are used
+            for (int slot : index.segCreation) {
+                int owner = index.segOwner[slot];
+                int child = index.segChild[slot];
+                int prefix = index.segPrefix[slot];
+                boolean first = slot == index.segStart[owner];
+
+                segTotal[slot] = Math.addExact(first ? 0 : segTotal[slot - 1], total(child, prefix));
+
+                // Suffix sizes of the owner: the previous segment's and the child's, plus one
+                int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+                if (!first && histSize[slot - 1] > 0) {
+                    lo = histLo[slot - 1];
+                    hi = histLo[slot - 1] + histSize[slot - 1];
+                }
+                if (child == index.finalState) {
+                    lo = Math.min(lo, 2);
+                    hi = Math.max(hi, 3);
+                } else if (prefix > 0 && histSize[index.segStart[child] + prefix - 1] > 0) {
+                    int childSlot = index.segStart[child] + prefix - 1;
+                    lo = Math.min(lo, histLo[childSlot] + 1);
+                    hi = Math.max(hi, histLo[childSlot] + histSize[childSlot] + 1);
+                }
+                if (hi < lo)
+                    hi = lo = 0;
+
+                if (poolSize + hi - lo > histPool.length)
+                    histPool = Arrays.copyOf(histPool,
+                            Math.max(poolSize + hi - lo, histPool.length * 2));
+                histLo[slot] = lo;
+                histSize[slot] = hi - lo;
+                histFrom[slot] = poolSize;
+                poolSize += hi - lo;
+
+                for (int size = lo; size < hi; size++)
+                    histPool[histFrom[slot] + size - lo] = Math.addExact(
+                            first ? 0 : count(slot - 1, size),
+                            count(child, prefix, size - 1));
+            }
+
+            // Top-level choices: BFS completes, then incomplete paths
+            topTotal = new long[numTops];
+            int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+            for (int t = 0; t < numTops; t++) {
+                topTotal[t] = Math.addExact(t > 0 ? topTotal[t - 1] : 0, topPaths(t));
+                if (topPaths(t) > 0) {
+                    lo = Math.min(lo, topMinSize(t));
+                    hi = Math.max(hi, topMaxSize(t));
+                }
+            }
+
+            // Top-level choices by path size
+            if (hi < lo)
+                hi = lo = 0;
+            minSize = lo;
+            int sizes = Math.max(0, hi - lo);
+            sizeTotal = new long[sizes];
+            sizeStart = new int[sizes + 1];
+            for (int t = 0; t < numTops; t++)
+                for (int size = topMinSize(t); size < topMaxSize(t); size++)
+                    if (topPaths(t, size) > 0)
+                        sizeStart[size - minSize + 1]++;
+            for (int s = 0; s < sizes; s++)
+                sizeStart[s + 1] += sizeStart[s];
+
+            int[] next = Arrays.copyOf(sizeStart, sizes);
+            sizeTop = new int[sizeStart[sizes]];
+            sizeCum = new long[sizeStart[sizes]];
+            for (int t = 0; t < numTops; t++) {
+                for (int size = topMinSize(t); size < topMaxSize(t); size++) {
+                    long paths = topPaths(t, size);
+                    if (paths == 0)
+                        continue;
+
+                    int s = size - minSize;
+                    int at = next[s]++;
+                    sizeTop[at] = t;
+                    sizeCum[at] = Math.addExact(at > sizeStart[s] ? sizeCum[at - 1] : 0, paths);
+                }
+            }
+            for (int s = 0; s < sizes; s++) {
+                long paths = sizeStart[s + 1] > sizeStart[s] ? sizeCum[sizeStart[s + 1] - 1] : 0;
+                sizeTotal[s] = Math.addExact(s > 0 ? sizeTotal[s - 1] : 0, paths);
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException(String.format(TOO_MANY_PATHS, Long.MAX_VALUE), e);
+        }
+    }
+
+    /**
+     * Returns the number of complete paths.
+     *
+     * @return number of paths.
+     */
+    public long countPaths() {
+        return numTops == 0 ? 0 : topTotal[numTops - 1];
+    }
+
+    /**
+     * Returns the number of complete paths with the given number of nodes.
+     *
+     * @param size path size.
+     * @return number of paths of that size.
+     */
+    public long countPaths(int size) {
+        int s = size - minSize;
+        if (s < 0 || s >= sizeTotal.length)
+            return 0;
+        return sizeTotal[s] - (s > 0 ? sizeTotal[s - 1] : 0);
+    }
+
+    /**
+     * Draws random complete paths. Paths are drawn independently, so the sample may hold the same
+     * path more than once.
+     *
+     * @param samples      number of paths to draw.
+     * @param distribution probability distribution of the paths.
+     * @param random       source of randomness.
+     * @return sampled paths, from the initial state to the super sink node.
+     * @throws IllegalStateException when the graph has no complete paths.
+     */
+    public List<Path> sample(int samples, Distribution distribution, RandomGenerator random) {
+        if (samples < 0)
+            throw new IllegalArgumentException(BAD_SAMPLES);
+        if (samples > 0 && countPaths() == 0)
+            throw new IllegalStateException(NO_PATHS);
+
+        List<Path> paths = new ArrayList<>(samples);
+        for (int i = 0; i < samples; i++)
+            paths.add(Path.wrap(distribution == Distribution.UNIFORM
+                    ? drawUniform(random)
+                    : drawBySize(random)));
+        return paths;
+    }
+
+    /**
+     * Draws a path, every path with the same probability.
+     *
+     * @param random source of randomness.
+     * @return path.
+     */
+    private int[] drawUniform(RandomGenerator random) {
+        long x = random.nextLong(countPaths());
+        int t = upperBound(topTotal, 0, numTops, x);
+        x -= t > 0 ? topTotal[t - 1] : 0;
+
+        if (t < index.completes.length)
+            return completed(index.completes[t]);
+
+        int cut = t - index.completes.length;
+        int[] path = new int[index.depth[index.cutFrom[cut]] + 16];
+        int length = index.prefix(index.cutFrom[cut], path);
+
+        int node = index.cutTo[cut];
+        int prefix = index.numSegments(node);
+        while (node != index.finalState) {
+            path = put(path, length++, node);
+
+            int lo = index.segStart[node];
+            int slot = upperBound(segTotal, lo, lo + prefix, x);
+            x -= slot > lo ? segTotal[slot - 1] : 0;
+            node = index.segChild[slot];
+            prefix = index.segPrefix[slot];
+        }
+        path = put(path, length++, node);
+
+        return Arrays.copyOf(path, length);
+    }
+
+    /**
+     * Draws a path: first its size, by frequency, then a path of that size uniformly.
+     *
+     * @param random source of randomness.
+     * @return path.
+     */
+    private int[] drawBySize(RandomGenerator random) {
+        long x = random.nextLong(countPaths());
+        int s = upperBound(sizeTotal, 0, sizeTotal.length, x);
+        x -= s > 0 ? sizeTotal[s - 1] : 0;
+
+        int at = upperBound(sizeCum, sizeStart[s], sizeStart[s + 1], x);
+        x -= at > sizeStart[s] ? sizeCum[at - 1] : 0;
+        int t = sizeTop[at];
+
+        if (t < index.completes.length)
+            return completed(index.completes[t]);
+
+        int cut = t - index.completes.length;
+        int[] path = new int[minSize + s];
+        int length = index.prefix(index.cutFrom[cut], path);
+
+        int node = index.cutTo[cut];
+        int prefix = index.numSegments(node);
+        for (int remaining = path.length - length; node != index.finalState; remaining--) {
+            path[length++] = node;
+
+            // First segment whose cumulative count of suffixes of that size exceeds x
+            int lo = index.segStart[node], hi = lo + prefix;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (count(mid, remaining) > x)
+                    hi = mid;
+                else
+                    lo = mid + 1;
+            }
+            x -= lo > index.segStart[node] ? count(lo - 1, remaining) : 0;
+            node = index.segChild[lo];
+            prefix = index.segPrefix[lo];
+        }
+        path[length] = node;
+
+        return path;
+    }
+
+    /**
+     * Returns the path the forward BFS completes at the given node.
+     *
+     * @param node parent of the edge to the super sink.
+     * @return path.
+     */
+    private int[] completed(int node) {
+        int[] path = new int[index.depth[node] + 1];
+        path[index.prefix(node, path)] = index.finalState;
+        return path;
+    }
+
+    /**
+     * Returns the number of suffixes of a node among its first segments.
+     *
+     * @param node   node index.
+     * @param prefix number of segments.
+     * @return number of suffixes.
+     */
+    private long total(int node, int prefix) {
+        if (node == index.finalState)
+            return 1;
+        return prefix == 0 ? 0 : segTotal[index.segStart[node] + prefix - 1];
+    }
+
+    /**
+     * Returns the number of suffixes of a given size of a node among its first segments.
+     *
+     * @param node   node index.
+     * @param prefix number of segments.
+     * @param size   suffix size, the node included.
+     * @return number of suffixes.
+     */
+    private long count(int node, int prefix, int size) {
+        if (node == index.finalState)
+            return size == 1 ? 1 : 0;
+        return prefix == 0 ? 0 : count(index.segStart[node] + prefix - 1, size);
+    }
+
+    /**
+     * Returns the number of suffixes of a given size up to and including a segment.
+     *
+     * @param slot segment.
+     * @param size suffix size.
+     * @return number of suffixes.
+     */
+    private long count(int slot, int size) {
+        int at = size - histLo[slot];
+        return at < 0 || at >= histSize[slot] ? 0 : histPool[histFrom[slot] + at];
+    }
+
+    private long topPaths(int t) {
+        if (t < index.completes.length)
+            return 1;
+        int child = index.cutTo[t - index.completes.length];
+        return total(child, index.numSegments(child));
+    }
+
+    private long topPaths(int t, int size) {
+        if (t < index.completes.length)
+            return size == index.depth[index.completes[t]] + 1 ? 1 : 0;
+        int cut = t - index.completes.length;
+        int child = index.cutTo[cut];
+        return count(child, index.numSegments(child), size - index.depth[index.cutFrom[cut]]);
+    }
+
+    private int topMinSize(int t) {
+        if (t < index.completes.length)
+            return index.depth[index.completes[t]] + 1;
+        int cut = t - index.completes.length;
+        return index.depth[index.cutFrom[cut]] + suffixSizes(index.cutTo[cut], true);
+    }
+
+    private int topMaxSize(int t) {
+        if (t < index.completes.length)
+            return index.depth[index.completes[t]] + 2;
+        int cut = t - index.completes.length;
+        return index.depth[index.cutFrom[cut]] + suffixSizes(index.cutTo[cut], false);
+    }
+
+    /**
+     * Returns the bounds of a node's suffix sizes, over all its segments.
+     *
+     * @param node  node index.
+     * @param lower true for the shortest size, false for the longest size plus one.
+     * @return size bound.
+     */
+    private int suffixSizes(int node, boolean lower) {
+        int segments = index.numSegments(node);
+        if (segments == 0)
+            return 0;
+        int slot = index.segStart[node] + segments - 1;
+        return lower ? histLo[slot] : histLo[slot] + histSize[slot];
+    }
+
+    /**
+     * Returns the first position in [from, to) whose cumulative count exceeds x.
+     */
+    private static int upperBound(long[] cumulative, int from, int to, long x) {
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] > x)
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+        return lo;
+    }
+
+    private static int[] put(int[] path, int at, int node) {
+        if (at >= path.length)
+            path = Arrays.copyOf(path, path.length * 2);
+        path[at] = node;
+        return path;
+    }
+}
@@ -0,0 +1,17 @@
+package graph;
+
+/**
+ * Receives complete paths one at a time, from the initial state to the super sink node.
+ */
+@FunctionalInterface
+public interface PathVisitor {
+
+    /**
+     * Visits a path. The array is reused for the following paths: copy it to keep the path.
+     *
+     * @param path   buffer whose first length positions hold the path's nodes.
+     * @param length number of nodes in the path.
+     * @return true to continue with the next path; false to stop.
+     */
+    boolean visit(int[] path, int length);
+}
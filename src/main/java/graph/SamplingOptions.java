@@ -0,0 +1,69 @@
+package graph;
+
+import java.util.SplittableRandom;
+
+/**
+ * Options for sampling the complete paths of a state space graph. Sampling is deterministic: with
+ * the same seed, the same graph gives the same sample whatever the parallelism, so a run can be
+ * reproduced from its seed.
+ */
+public class SamplingOptions {
+
+    // Exceptions
+    private static final String BAD_PARALLELISM = "Parallelism must be positive: %d.";
+
+    private long seed;          // seed every random draw derives from
+    private int parallelism;    // number of workers completing and drawing the paths
+
+    /**
+     * Creates options with a fresh random seed, which {@link #getSeed()} returns, and one worker.
+     */
+    public SamplingOptions() {
+        seed = new SplittableRandom().nextLong();
+        parallelism = 1;
+    }
+
+    /**
+     * Sets the seed of the sample. Draws are made in blocks, each from its own
+     * {@link SplittableRandom} split from the seed, so that workers draw independently.
+     *
+     * @param seed seed of the draws.
+     * @return these options.
+     */
+    public SamplingOptions seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the number of workers that complete the incomplete paths and draw the sample.
+     *
+     * @param parallelism number of workers; 1 samples in the calling thread.
+     * @return these options.
+     */
+    public SamplingOptions parallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException(String.format(BAD_PARALLELISM, parallelism));
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Returns the seed of the sample.
+     *
+     * @return seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the number of workers that complete and draw the paths.
+     *
+     * @return parallelism level.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+}
@@ -0,0 +1,147 @@
+package graph;
+
+import domain.State;
+import metrics.Metrics;
+import metrics.Metrics.Counter;
+import parser.VisitorOrientedParser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * State labels of the graph's nodes. Only the position of each node's label is kept; a state
+ * is parsed the first time it is asked for and stays in a bounded least-recently-used cache.
+ * <p>
+ * The labels are read from read-only mapped windows (of the DOT file, or of a graph snapshot).
+ * Windows start and end at line boundaries, so a label never spans two of them. Labels of nodes
+ * added later come with their own windows.
+ */
+final class StateLabels {
+
+    private ByteBuffer[] windows;   // mapped regions holding the labels
+    private long[] bounds;          // window i starts at bounds[i]
+    private long[] offsets;         // label position of each node, -1 if it has none
+    private int[] lengths;          // label length of each node, in bytes
+
+    private final VisitorOrientedParser parser;
+    private final Map<Integer, State> cache;
+    private Metrics metrics;        // counts the states parsed, null if not counted
+
+    /**
+     * Creates the state labels.
+     *
+     * @param windows   mapped regions holding the labels.
+     * @param bounds    start position of each window.
+     * @param offsets   label position of each node, -1 if it has none (e.g. the super sink).
+     * @param lengths   label length of each node.
+     * @param cacheSize maximum number of parsed states kept.
+     */
+    StateLabels(ByteBuffer[] windows, long[] bounds, long[] offsets, int[] lengths, int cacheSize) {
+        this.windows = windows;
+        this.bounds = bounds;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        parser = new VisitorOrientedParser();
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, State> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Replaces the labels with a longer version of them, when nodes are added. The nodes already
+     * labelled keep their label, so parsed states stay cached.
+     *
+     * @param windows regions holding the labels, starting with the current ones.
+     * @param bounds  start position of each window.
+     * @param offsets label position of each node, -1 if it has none.
+     * @param lengths label length of each node.
+     */
+    synchronized void extend(ByteBuffer[] windows, long[] bounds, long[] offsets, int[] lengths) {
+        this.windows = windows;
+        this.bounds = bounds;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Counts the states parsed on demand from now on.
+     *
+     * @param metrics metrics to add to.
+     */
+    synchronized void countParses(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the state of a given node, parsing its label if it is not cached.
+     *
+     * @param idx node index.
+     * @return state; null if the node has no label.
+     */
+    synchronized State state(int idx) {
+        State state = cache.get(idx);
+
+        if (state == null && offsets[idx] >= 0) {
+            state = parser.parse(label(idx));
+            cache.put(idx, state);
+            if (metrics != null)
+                metrics.add(Counter.STATES_PARSED, 1);
+        }
+
+        return state;
+    }
+
+    /**
+     * Returns the raw label of a given node.
+     *
+     * @param idx node index.
+     * @return label as it appears in the file.
+     */
+    String label(int idx) {
+        return new String(labelBytes(idx), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the raw label bytes of a given node.
+     *
+     * @param idx node index.
+     * @return label bytes as they appear in the file.
+     */
+    byte[] labelBytes(int idx) {
+        ByteBuffer label = labelView(idx);
+        byte[] bytes = new byte[label.remaining()];
+        label.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns the raw label of a given node without copying it: a view of the mapped window
+     * holding it.
+     *
+     * @param idx node index.
+     * @return read-only view of the label bytes, with its own position.
+     */
+    synchronized ByteBuffer labelView(int idx) {
+        int window = Arrays.binarySearch(bounds, offsets[idx]);
+        if (window < 0)
+            window = -window - 2;
+
+        return windows[window].slice((int) (offsets[idx] - bounds[window]), lengths[idx]);
+    }
+
+    /**
+     * Returns the label length of a given node.
+     *
+     * @param idx node index.
+     * @return label length, in bytes.
+     */
+    synchronized int labelLength(int idx) {
+        return lengths[idx];
+    }
+}
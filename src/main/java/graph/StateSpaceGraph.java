@@ -1,14 +1,19 @@
 package graph;
 
 import domain.State;
-import parser.VisitorOrientedParser;
-import pruning.PathPruner;
+import metrics.Metrics;
+import metrics.Metrics.Counter;
+import metrics.Metrics.Phase;
+import pruning.PathRunSampler;
+import pruning.PathSizeSampler;
+import pruning.PathStats;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class StateSpaceGraph {
 
@@ -18,35 +23,21 @@ public class StateSpaceGraph {
     private static final String PATHS = "------------------------- PATHS -------------------------";
     private static final String GRAPH = "------------------------- GRAPH -------------------------";
     private static final String STATS = "------------------------- STATS -------------------------";
+    private static final String METRICS = "------------------------ METRICS ------------------------";
     private static final String SPLIT = "---------------------------------------------------------";
 
     // DOT processing
-    private static final String EDGE_CHAR = " -> ";
-    private static final String LABEL = "label=";
-    private static final String SPACE = " ";
-    private static final String QUOTE = "\"";
+    private static final String EDGE_CHAR = "->";
 
     // Exceptions
     private static final String NOT_FOUND = "File %s not found.\n";
+    private static final String PENDING_EDGES = "File %s has %d edges to or from undeclared " +
+            "states; they wait for a refresh.\n";
+    private static final String NOT_FROM_DOT = "Only graphs read from DOT files can be extended.";
+    private static final String BAD_PATH_MEMORY = "Path memory budget must be positive: %d.";
 
-    // Edge labels
-    private static final String FINAL = "final";
-
-    // Initial sizes
-    private static int INITIAL_NODES = 1000;
-    private static int INITIAL_EDGES = 30;
-    private static int INITIAL_PARAMS = 10;
-
-    // Complete & incomplete paths
-    private static final int PATH_CATEGORIES = 2;
-    private static final int COMPLETE = 0;
-    private static final int INCOMPLETE = 1;
-
-    // A graph with 2k nodes results in 2M paths.
-    private static final int NUM_PATHS = 10000;
-
-    // It's common to have paths sizes ranging from 20-30
-    private static final int PATH_LENGTH = 30;
+    // States parsed on demand kept when opening a snapshot
+    private static final int STATE_CACHE = 10000;
 
     // Initial state index
     private static int INITIAL = 0;
@@ -54,24 +45,141 @@ public class StateSpaceGraph {
     private int finalState;            // Final state index
     private int numNodes;             // Number of nodes in the graph
     private int numEdges;             // Number of edges in the graph
-    private List<Edge>[] outgoing;    // Outgoing edges of all the graph's nodes
-    private List<Edge>[] incoming;    // Incoming edges of all the graph's nodes
-    private State[] states;           // TLA+ states
+    private Edge[] edges;             // All the graph's edges, indexed by edge id
+    private CsrAdjacency outgoing;    // Outgoing edges of all the graph's nodes
+    private CsrAdjacency incoming;    // Incoming edges of all the graph's nodes
+    private State[] states;           // TLA+ states, null when they are lazy
+    private StateLabels labels;       // TLA+ state labels, parsed on demand when states are lazy
+    private BitSet finalStates;       // Nodes whose state is final
+    private PathIndex pathIndex;      // Outcome of the path traversals, built on first use
+    private PathSampler pathSampler;  // Path counts over the path index, built on first use
+    private DistanceIndex distances;  // Distances from the initial state and to the super sink
+    private Condensation condensation; // Strongly connected components, found on first use
+    private DotLoader loader;         // Reads the lines added to the DOT file, null for snapshots
+    private final Metrics metrics = new Metrics();  // Timers and counters of the graph's phases
+    private long pathMemory;          // Bytes of sampled paths kept in memory before spilling
+    private java.nio.file.Path spillDirectory;      // Run files directory, null if not spilling
 
     private Map<Long, Integer> nodesById;
-    private Map<String, Edge> edgesById;
+    private EdgeIndex edgeIndex;      // DOT edge ids by source and destination
+    private EdgeSymbols symbols;      // Interned transitions and parameter tuples
+    private int[] edgeTransition;     // Transition id of each edge
+    private int[] edgeTuple;          // Parameter tuple id of each edge
 
     public StateSpaceGraph(String filePath) {
-        nodesById = new HashMap<>(INITIAL_NODES);
-        try {
-            countNodes(filePath);
-            initialiseStructures();
-            processEdges(filePath);
+        this(filePath, new LoadOptions());
+    }
+
+    public StateSpaceGraph(String filePath, LoadOptions options) {
+        Metrics.Timer load = metrics.time(Phase.LOAD);
+        try (load) {
+            DotLoader loader = new DotLoader(options.getParallelism(), options.isLazyStates(),
+                    metrics);
+            loader.load(filePath);
+            build(loader, options);
+            if (loader.numPendingEdges() > 0)
+                System.err.printf(PENDING_EDGES, filePath, loader.numPendingEdges());
         } catch (IOException e) {
             System.err.printf(NOT_FOUND, filePath);
         }
     }
 
+    /**
+     * Creates a graph from already built structures, e.g. when opening a snapshot. States are
+     * parsed on demand from the given labels. The edge labels must be interned in the given
+     * symbol tables.
+     */
+    StateSpaceGraph(Map<Long, Integer> nodesById, int numEdges, Edge[] edges, EdgeSymbols symbols,
+                    CsrAdjacency outgoing, CsrAdjacency incoming, StateLabels labels,
+                    BitSet finalStates) {
+        this.nodesById = nodesById;
+        this.numNodes = outgoing.numNodes();
+        this.numEdges = numEdges;
+        this.finalState = numNodes - 1;
+        this.edges = edges;
+        this.symbols = symbols;
+        this.outgoing = outgoing;
+        this.incoming = incoming;
+        this.labels = labels;
+        this.finalStates = finalStates;
+        labels.countParses(metrics);
+        indexEdges();
+    }
+
+    /**
+     * Opens a graph saved with {@link #save(String)}. The file is memory-mapped; states are
+     * parsed on demand.
+     *
+     * @param filePath snapshot file path.
+     * @return the saved graph.
+     * @throws IOException when the file cannot be read or is not a snapshot.
+     */
+    public static StateSpaceGraph fromSnapshot(String filePath) throws IOException {
+        return fromSnapshot(filePath, STATE_CACHE);
+    }
+
+    /**
+     * Opens a graph saved with {@link #save(String)}. The file is memory-mapped; states are
+     * parsed on demand.
+     *
+     * @param filePath       snapshot file path.
+     * @param stateCacheSize maximum number of parsed states kept in memory.
+     * @return the saved graph.
+     * @throws IOException when the file cannot be read or is not a snapshot.
+     */
+    public static StateSpaceGraph fromSnapshot(String filePath, int stateCacheSize)
+            throws IOException {
+        return GraphSnapshot.read(filePath, stateCacheSize);
+    }
+
+    /**
+     * Saves the graph in a compact binary snapshot, so it can be reopened without parsing the
+     * DOT file again.
+     *
+     * @param filePath snapshot file path.
+     * @throws IOException when the file cannot be written.
+     */
+    public void save(String filePath) throws IOException {
+        GraphSnapshot.write(this, filePath);
+    }
+
+    /**
+     * Reads the lines written to the DOT file since it was loaded or last refreshed, e.g. while
+     * the model checker is still writing it, and adds their nodes and edges to the graph. Only
+     * complete lines are read. Nodes and edges keep their indices; the super sink node moves to
+     * the new last index.
+     * <p>
+     * Only the new lines are parsed, and the edge index and adjacency grow in place. Distances
+     * are updated from the new edges, in time proportional to the nodes whose distance changes.
+     * The path index, path counts and strongly connected components are dropped: their next use
+     * costs a full re-analysis of the graph.
+     *
+     * @return true if the graph changed; false otherwise.
+     * @throws IOException when the file cannot be read or is shorter than the part already read.
+     */
+    public boolean refresh() throws IOException {
+        Metrics.Timer load = metrics.time(Phase.LOAD);
+        try (load) {
+            return incrementalLoader().loadAppended() && extend();
+        }
+    }
+
+    /**
+     * Adds the nodes and edges described by a batch of DOT lines, as if they were appended to the
+     * DOT file. Edges may refer to nodes of earlier batches or of the file. See
+     * {@link #refresh()}.
+     *
+     * @param lines node and edge descriptions, one per line.
+     * @return true if the graph changed; false otherwise.
+     */
+    public boolean append(String lines) {
+        Metrics.Timer load = metrics.time(Phase.LOAD);
+        try (load) {
+            incrementalLoader().loadLines(lines);
+            return extend();
+        }
+    }
+
     /**
      * Returns the state of a given node.
      *
@@ -79,7 +187,17 @@ public class StateSpaceGraph {
      * @return state.
      */
     public State getState(int idx) {
-        return states[idx];
+        return states != null ? states[idx] : labels.state(idx);
+    }
+
+    /**
+     * Checks whether the state of a given node is final, without parsing it.
+     *
+     * @param idx node index.
+     * @return true if the state is final; false otherwise.
+     */
+    public boolean isFinalState(int idx) {
+        return finalStates.get(idx);
     }
 
     /**
@@ -100,313 +218,705 @@ public class StateSpaceGraph {
         return numEdges;
     }
 
+    /**
+     * Returns the number of edges read from the DOT file but left out of the graph, as they
+     * refer to a state the file does not declare (yet). They are added by the refresh that
+     * reads the state.
+     *
+     * @return number of pending edges; 0 for graphs not read from DOT files.
+     */
+    public int getNumPendingEdges() {
+        return loader == null ? 0 : loader.numPendingEdges();
+    }
+
     /**
      * Returns the graph's initial state.
      *
      * @return initial state.
      */
     public State getInitialState() {
-        return states[INITIAL];
+        return getState(INITIAL);
+    }
+
+    /**
+     * Returns the timers and counters of the graph's phases, from loading to path sampling.
+     * They add up over the graph's lifetime, e.g. over refreshes and repeated samplings.
+     *
+     * @return graph metrics.
+     */
+    public Metrics getMetrics() {
+        return metrics;
     }
 
     // Graph Traversal
 
     /**
-     * A modified version of the standard BFS traversal, starting from the
-     * initial state, returning a two-position array with a list of complete and incomplete
-     * paths.
-     *
-     * @return both complete and incomplete paths.
-     */
-    @SuppressWarnings("unchecked")
-    private List<Deque<Integer>>[] pathsTo() {
-        // Tracks whether nodes have been added to the FIFO
-        boolean[] found = new boolean[numNodes];
-        found[finalState] = true;
-
-        Deque<Integer> fifo = new ArrayDeque<>(numNodes);
-        fifo.offer(INITIAL);
-        found[INITIAL] = true;
-
-        List<Deque<Integer>>[] paths = new List[PATH_CATEGORIES];
-        paths[COMPLETE] = new LinkedList<>();
-        paths[INCOMPLETE] = new LinkedList<>();
-
-        Deque<Integer>[] upTo = new Deque[numNodes];
-        for (int i = 0; i < numNodes; i++)
-            upTo[i] = new ArrayDeque<>(PATH_LENGTH);
-        upTo[INITIAL].add(INITIAL);
-
-        int parent, child;
-        Deque<Integer> upToChild;
-        while (!fifo.isEmpty()) {
-            parent = fifo.poll();
-
-            for (Edge e : outgoing[parent]) {
-                child = e.getDst();
-                upToChild = new ArrayDeque<>(upTo[parent]);
-                upToChild.offer(child);
-
-                if (!found[child]) {
-                    fifo.offer(child);
-                    found[child] = true;
-                    upTo[child] = upToChild;
-                } else if (child == finalState) {
-                    paths[COMPLETE].add(upToChild);
-                } else {
-                    paths[INCOMPLETE].add(upToChild);
-                }
-            }
-        }
-
-        return paths;
+     * Completes all the paths and samples them, from a random seed.
+     *
+     * @param numPaths the number of paths to return.
+     * @return distinct complete paths.
+     */
+    public List<Path> samplePaths(int numPaths) {
+        return samplePaths(numPaths, new SamplingOptions());
     }
 
     /**
-     * A modified version of the standard BFS traversal, starting from the final
-     * state that returns all the paths starting at a node.
-     * E.g. from[3]: {{3, 6, 9}, {3, 4, 7, 6, 9}}
+     * Completes all the paths and samples them, from a random seed. Incomplete paths are
+     * completed by the given number of workers; the paths sampled from are the same for any
+     * parallelism.
      *
-     * @return all the paths starting at a node.
+     * @param numPaths    the number of paths to return.
+     * @param parallelism number of workers completing the paths; 1 completes them in the
+     *                    calling thread.
+     * @return distinct complete paths.
      */
-    private List<Deque<Integer>>[] pathsFrom() {
-        List<Deque<Integer>>[] from = initialisePaths(finalState);
+    public List<Path> samplePaths(int numPaths, int parallelism) {
+        return samplePaths(numPaths, new SamplingOptions().parallelism(parallelism));
+    }
 
-        // Tracks whether nodes have been added to the FIFO
-        boolean[] found = new boolean[numNodes];
-        found[INITIAL] = true;
+    /**
+     * Completes all the paths and samples them with the given options. The sample only depends
+     * on the graph and the seed: it is the same for any parallelism, and whether the paths are
+     * spilled or not (see {@link #spillPaths(long, String)}). Spilled paths are completed in the
+     * calling thread.
+     *
+     * @param numPaths the number of paths to return.
+     * @param options  seed and parallelism of the sample.
+     * @return distinct complete paths.
+     */
+    public List<Path> samplePaths(int numPaths, SamplingOptions options) {
+        if (spillDirectory != null)
+            return samplePathRuns(numPaths, options);
+
+        // Complete paths share their prefixes and suffixes; only the sampled ones are built
+        PathIndex index = pathIndex();
+        CompletePaths paths;
+        Metrics.Timer completion = metrics.time(Phase.COMPLETION);
+        try (completion) {
+            paths = new CompletePaths(index, options.getParallelism());
+        }
+        metrics.add(Counter.COMPLETE_PATHS, paths.size());
 
-        Deque<Integer> fifo = new ArrayDeque<>();
-        fifo.offer(finalState);
-        found[finalState] = true;
+        if (paths.isEmpty())
+            return List.of();
 
-        int child, parent;
-        while (!fifo.isEmpty()) {
-            child = fifo.poll();
+        // Duplicate draws are redrawn: the user may ask for more paths than the total number of
+        // distinct paths in the graph.
+        Metrics.Timer sampling = metrics.time(Phase.SAMPLING);
+        try (sampling) {
+            return new PathSizeSampler(paths, paths::pathSize).sample(numPaths, options.getSeed(),
+                    options.getParallelism(), metrics);
+        }
+    }
 
-            for (Edge e : incoming[child]) {
-                parent = e.getSrc();
+    /**
+     * Completes all the paths into runs bounded by the memory budget, and samples them by
+     * streaming the runs. See {@link #spillPaths(long, String)}.
+     *
+     * @param numPaths the number of paths to return.
+     * @param options  seed and parallelism of the sample.
+     * @return distinct complete paths.
+     */
+    private List<Path> samplePathRuns(int numPaths, SamplingOptions options) {
+        PathIndex index = pathIndex();
+        try (PathRuns runs = new PathRuns(pathMemory, spillDirectory)) {
+            Metrics.Timer completion = metrics.time(Phase.COMPLETION);
+            try (completion) {
+                index.forEach((path, length) -> {
+                    runs.add(path, length);
+                    return true;
+                });
+            }
+            metrics.add(Counter.COMPLETE_PATHS, runs.size());
+            metrics.add(Counter.SPILLED_BYTES, runs.spilledBytes());
 
-                for (Deque<Integer> path : from[child]) {
-                    Deque<Integer> fromParent = new ArrayDeque<>(path);
-                    fromParent.addFirst(parent);
-                    from[parent].add(fromParent);
-                }
+            if (runs.size() == 0)
+                return List.of();
 
-                if (!found[parent]) {
-                    fifo.offer(parent);
-                    found[parent] = true;
-                }
+            Metrics.Timer sampling = metrics.time(Phase.SAMPLING);
+            try (sampling) {
+                return new PathRunSampler(runs).sample(numPaths, options.getSeed(),
+                        options.getParallelism(), metrics);
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
+
+    /**
+     * Bounds the memory taken by the complete paths when sampling them. Paths are encoded in a
+     * buffer of the given size; once it is full, it is written to a run file in the given
+     * directory. Sampling then streams the runs, so graphs with far more paths than fit in the
+     * heap can be sampled. Paths are completed in the calling thread.
+     *
+     * @param memoryBudget bytes of encoded paths kept in memory.
+     * @param directory    directory of the run files, which are deleted once sampled.
+     */
+    public void spillPaths(long memoryBudget, String directory) {
+        if (memoryBudget < 1)
+            throw new IllegalArgumentException(String.format(BAD_PATH_MEMORY, memoryBudget));
 
-        return from;
+        pathMemory = memoryBudget;
+        spillDirectory = java.nio.file.Path.of(directory);
     }
 
     /**
-     * Completes all the paths.
+     * Completes all the paths and samples them, as deques. Kept for backward compatibility:
+     * use {@link #samplePaths(int)}.
      *
      * @param numPaths the number of paths to return.
-     * @return complete paths.
+     * @return distinct complete paths.
+     * @deprecated boxes every node; use {@link #samplePaths(int)}.
      */
+    @Deprecated
     public List<Deque<Integer>> getPaths(int numPaths) {
-        List<Deque<Integer>>[] paths = pathsTo();
-        List<Deque<Integer>>[] from = pathsFrom();
-
-        int last;
-        for (Deque<Integer> path : paths[INCOMPLETE]) {
-            assert !path.isEmpty();
-            last = path.pollLast();
-
-            for (Deque<Integer> fromLast : from[last]) {
-                Deque<Integer> cpy = new ArrayDeque<>(path);
-                cpy.addAll(fromLast);
-                paths[COMPLETE].add(cpy);
-            }
-        }
-
-        // Removing duplicates: the user may ask for more paths than the total number of distinct
-        // paths in the graph.
-        return PathPruner.sample(paths[COMPLETE], numPaths).stream()
-                .distinct()
+        return samplePaths(numPaths).stream()
+                .map(Path::toDeque)
                 .toList();
     }
 
     /**
-     * Returns an array of the edge transitions.
+     * Visits every complete path, one at a time, without storing them: memory is bounded by the
+     * path length rather than the number of paths. These are the paths samplePaths draws from,
+     * in the same order. The visitor can stop the enumeration early.
      *
-     * @param path of nodes in the graph.
-     * @return array of edge transitions.
+     * @param visitor path visitor.
      */
-    public Edge[] getPathEdges(Deque<Integer> path) {
-        Edge[] edges = new Edge[path.size() - 2]; // removing initial and final states
-
-        path.pollLast();
+    public void forEachPath(PathVisitor visitor) {
+        PathIndex index = pathIndex();
+        Metrics.Timer enumeration = metrics.time(Phase.ENUMERATION);
+        try (enumeration) {
+            index.forEach(visitor);
+        }
+    }
 
-        int i = 0;
-        Iterator<Integer> it = path.iterator();
+    /**
+     * Returns a lazy stream over every complete path, in the same order as
+     * {@link #forEachPath(PathVisitor)}. Paths are built as the stream is consumed, so
+     * short-circuiting operations (e.g. limit) stop the enumeration.
+     *
+     * @return stream of paths, from the initial state to the super sink node.
+     */
+    public Stream<Path> paths() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pathIndex().iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
 
-        int src, dst = -1;
-        while (it.hasNext()) {
-            src = i == 0 ? it.next() : dst;
-            dst = it.next();
-            edges[i++] = edgesById.get(src + "->" + dst);
+    /**
+     * Returns a sampler that draws complete paths from their counts, without enumerating them.
+     * The paths are counted on first use.
+     *
+     * @return path sampler.
+     */
+    public PathSampler getPathSampler() {
+        if (pathSampler == null) {
+            PathIndex index = pathIndex();
+            Metrics.Timer counting = metrics.time(Phase.COUNTING);
+            try (counting) {
+                pathSampler = new PathSampler(index);
+            }
         }
+        return pathSampler;
+    }
 
-        return edges;
+    /**
+     * Discards the traversals, path counts, distances and components computed so far: they are
+     * computed again on next use. Lets benchmarks time the traversals through the public API.
+     */
+    public void discardPathIndexes() {
+        distances = null;
+        condensation = null;
+        pathIndex = null;
+        pathSampler = null;
     }
 
     /**
-     * Returns the initialisation of a structure that will store the different
-     * paths up to a node.
-     * e.g. paths[3]: { {0, 1, 3}, {0, 2, 4, 8, 3} }
+     * Returns the distance of a node from the initial state.
      *
-     * @param firstNode the first node to have a path.
-     * @return upTo structure.
+     * @param node node index.
+     * @return number of edges of a shortest path from the initial state; -1 if the node cannot
+     * be reached.
      */
-    @SuppressWarnings("unchecked")
-    private List<Deque<Integer>>[] initialisePaths(int firstNode) {
-        List<Deque<Integer>>[] paths = new List[numNodes];
+    public int distanceFromInitial(int node) {
+        return distances().fromInitial[node];
+    }
 
-        for (int i = 0; i < numNodes; i++)
-            paths[i] = new ArrayList<>(NUM_PATHS);
+    /**
+     * Returns the distance of a node to the nearest final state. The super sink node, which
+     * follows every final state, is at distance 0 too.
+     *
+     * @param node node index.
+     * @return number of edges of a shortest path to a final state; -1 if the node is a dead end.
+     */
+    public int distanceToFinal(int node) {
+        int toSink = distances().toSink[node];
+        return toSink == DistanceIndex.UNREACHABLE ? toSink : Math.max(0, toSink - 1);
+    }
 
-        Deque<Integer> initialPath = new ArrayDeque<>(PATH_LENGTH);
-        initialPath.add(firstNode);
-        paths[firstNode].add(initialPath);
+    /**
+     * Checks whether a node leads to a final state. Complete paths never go through the nodes
+     * that do not, and path generation skips them.
+     *
+     * @param node node index.
+     * @return true if some path leads from the node to a final state; false otherwise.
+     */
+    public boolean canReachFinal(int node) {
+        return distances().reachesSink(node);
+    }
 
-        return paths;
+    /**
+     * Returns the size of the shortest complete path through a node, which bounds the size of
+     * every complete path through it.
+     *
+     * @param node node index.
+     * @return number of nodes of the shortest complete path through the node; 0 if no complete
+     * path goes through it.
+     */
+    public int shortestPathSizeThrough(int node) {
+        DistanceIndex index = distances();
+        if (index.fromInitial[node] == DistanceIndex.UNREACHABLE || !index.reachesSink(node))
+            return 0;
+        return index.fromInitial[node] + index.toSink[node] + 1;
     }
 
-    // Graph construction
+    /**
+     * Returns the distances of the graph, running their BFS traversals on first use.
+     *
+     * @return distance index.
+     */
+    private DistanceIndex distances() {
+        if (distances == null)
+            distances = DistanceIndex.build(outgoing, incoming, INITIAL, finalState);
+        return distances;
+    }
 
     /**
-     * Initialises the outgoing, incoming, and states.
+     * Returns the strongly connected components of the graph and the DAG they condense it into.
+     * The components are found on first use.
+     *
+     * @return condensation of the graph as it is now.
      */
-    @SuppressWarnings("unchecked")
-    private void initialiseStructures() {
-        numNodes = nodesById.size() + 1;
+    public Condensation condensation() {
+        if (condensation == null) {
+            Metrics.Timer traversal = metrics.time(Phase.TRAVERSAL);
+            try (traversal) {
+                condensation = new Condensation(outgoing);
+            }
+        }
+        return condensation;
+    }
 
-        outgoing = new List[numNodes];
-        for (int i = 0; i < numNodes; i++)
-            outgoing[i] = new ArrayList<>(INITIAL_EDGES);
+    /**
+     * Returns the complete paths that take at most the given number of cycle-closing edges in
+     * each strongly connected component. Unlike the paths of {@link #forEachPath(PathVisitor)},
+     * they do not depend on the order of a traversal; they are counted on each call.
+     *
+     * @param unroll feedback edges a path may take in each component.
+     * @return counted paths; their count saturates at Long.MAX_VALUE.
+     */
+    public UnrolledPaths unrolledPaths(int unroll) {
+        Condensation components = condensation();
+        Metrics.Timer counting = metrics.time(Phase.COUNTING);
+        try (counting) {
+            return new UnrolledPaths(components, outgoing, INITIAL, finalState, unroll);
+        }
+    }
 
-        incoming = new List[numNodes];
-        for (int i = 0; i < numNodes; i++)
-            incoming[i] = new ArrayList<>(INITIAL_EDGES);
+    /**
+     * Returns shortest path queries between any two nodes of the graph, e.g. a shortest path to
+     * a given state. Queries reuse their scratch buffers: use one object per thread.
+     *
+     * @return path queries over the graph as it is now.
+     */
+    public PathQueries queries() {
+        return new PathQueries(outgoing, incoming, INITIAL, finalState);
+    }
 
-        states = new State[numNodes];
-        finalState = numNodes - 1;
-        try {
-            edgesById = new HashMap<>(numEdges);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    /**
+     * Returns the path index, running the path traversals on first use.
+     *
+     * @return path index.
+     */
+    private PathIndex pathIndex() {
+        if (pathIndex == null) {
+            Metrics.Timer traversal = metrics.time(Phase.TRAVERSAL);
+            try (traversal) {
+                pathIndex = PathIndex.build(outgoing, incoming, INITIAL, finalState, distances());
+            }
+            countTraversal(pathIndex);
         }
+        return pathIndex;
     }
 
     /**
-     * First pass through the DOT file.
-     * Initialises graph and states. Populates the nodesById data structure.
+     * Counts the levels of the forward traversal, the nodes of its largest level and the
+     * incomplete paths it found.
      *
-     * @param filePath DOT file path.
-     * @throws FileNotFoundException when the DOT is not found.
+     * @param index path index.
      */
-    private void countNodes(String filePath) throws IOException {
-        numEdges = 0;
-        BufferedReader buff = new BufferedReader(new FileReader(filePath));
-        String line = buff.readLine();
+    private void countTraversal(PathIndex index) {
+        int[] levelSizes = new int[numNodes + 1];
+        int levels = 0, peak = 0;
+        for (int depth : index.depth) {
+            if (depth > 0) {
+                levels = Math.max(levels, depth);
+                peak = Math.max(peak, ++levelSizes[depth]);
+            }
+        }
+
+        metrics.max(Counter.BFS_LEVELS, levels);
+        metrics.max(Counter.FRONTIER_PEAK, peak);
+        metrics.add(Counter.INCOMPLETE_PATHS, index.cutFrom.length);
+    }
 
-        while (line != null) {
-            if (isNodeDescription(line))
-                nodesById.put(Long.parseLong(line.trim().split(SPACE)[0]), nodesById.size());
-            else if (isEdgeDescription(line))
-                numEdges++;
-            line = buff.readLine();
+    /**
+     * Returns an array of the edge transitions. Between nodes linked by parallel edges, the last
+     * one described in the DOT file is returned; see {@link #getPathEdgeVariants(Path)}.
+     *
+     * @param path of nodes in the graph, ending at the super sink node.
+     * @return array of edge transitions.
+     */
+    public Edge[] getPathEdges(Path path) {
+        Edge[] pathEdges = new Edge[path.size() - 2]; // removing initial and final states
+        resolveEdges(path, pathEdges);
+        return pathEdges;
+    }
+
+    /**
+     * Returns the edge transitions of every given path. Lookups go through the primitive edge
+     * index, so the only allocations are the result arrays.
+     *
+     * @param paths of nodes in the graph, each ending at the super sink node.
+     * @return array of edge transitions of each path, in the order of the paths.
+     */
+    public Edge[][] getPathEdges(List<Path> paths) {
+        Edge[][] pathEdges = new Edge[paths.size()][];
+
+        int i = 0;
+        for (Path path : paths) {
+            pathEdges[i] = new Edge[path.size() - 2];
+            resolveEdges(path, pathEdges[i++]);
         }
 
-        buff.close();
+        return pathEdges;
     }
 
     /**
-     * Second pass through the DOT file.
-     * Processes the graph's edges. Fills the graph data structure.
+     * Returns the distinct transitions from one node to another: the parallel edges between them,
+     * in the order of the DOT file, keeping one edge per transition and parameters.
      *
-     * @param filePath DOT file path.
+     * @param src source node.
+     * @param dst destination node.
+     * @return distinct edges; empty if the nodes are not linked.
      */
-    private void processEdges(String filePath) throws IOException {
-        VisitorOrientedParser parser = new VisitorOrientedParser();
-        BufferedReader buff = new BufferedReader(new FileReader(filePath));
-        String trimmedLine, line = buff.readLine();
-        Edge edge;
+    public Edge[] getEdgeVariants(int src, int dst) {
+        int count = 0;
+        for (int e = edgeIndex.get(src, dst); e != EdgeIndex.NONE; e = edgeIndex.previous(e))
+            count++;
+
+        // The index chains parallel edges from the last one
+        int[] ids = new int[count];
+        for (int e = edgeIndex.get(src, dst); e != EdgeIndex.NONE; e = edgeIndex.previous(e))
+            ids[--count] = e;
+
+        // Interned ids make variants equal exactly when their symbol ids are
+        int distinct = 0;
+        for (int id : ids) {
+            boolean seen = false;
+            for (int i = 0; i < distinct && !seen; i++)
+                seen = edgeTransition[ids[i]] == edgeTransition[id] && edgeTuple[ids[i]] == edgeTuple[id];
+            if (!seen)
+                ids[distinct++] = id;
+        }
 
-        while (line != null) {
-            trimmedLine = line.trim();
-            if (isEdgeDescription(trimmedLine)) {
-                String[] splitByEdge = trimmedLine.split(EDGE_CHAR);
-                long src = Long.parseLong(splitByEdge[0].trim());
-                long dst = Long.parseLong(splitByEdge[1].trim().split(SPACE)[0]);
-                String labelField = trimmedLine.split(LABEL)[1].split(QUOTE)[1];
-                String transition = labelField.split("\\(")[0];
+        Edge[] variants = new Edge[distinct];
+        for (int i = 0; i < distinct; i++)
+            variants[i] = edges[ids[i]];
+        return variants;
+    }
 
-                int srcId = nodesById.get(src);
-                int dstId = nodesById.get(dst);
-                String[] parameters = processParameters(labelField);
-                edge = new Edge(srcId, dstId, transition, parameters);
+    /**
+     * Returns, for every step of a path, its distinct transitions. Each choice of one transition
+     * per step is a variant of the path; see {@link #pathEdgeVariants(Path)}.
+     *
+     * @param path of nodes in the graph, ending at the super sink node.
+     * @return distinct edges of each step, removing initial and final states.
+     */
+    public Edge[][] getPathEdgeVariants(Path path) {
+        Edge[][] steps = new Edge[path.size() - 2][];
+        for (int i = 0; i < steps.length; i++)
+            steps[i] = getEdgeVariants(path.node(i), path.node(i + 1));
+        return steps;
+    }
 
-                outgoing[srcId].add(edge);
-                incoming[dstId].add(edge);
+    /**
+     * Returns the number of transition variants of a path.
+     *
+     * @param path of nodes in the graph, ending at the super sink node.
+     * @return number of variants, or Long.MAX_VALUE if it does not fit in a long.
+     */
+    public long countPathEdgeVariants(Path path) {
+        long count = 1;
+        for (Edge[] step : getPathEdgeVariants(path)) {
+            if (step.length == 0)
+                return 0;
+            if (count > Long.MAX_VALUE / step.length)
+                return Long.MAX_VALUE;
+            count *= step.length;
+        }
+        return count;
+    }
+
+    /**
+     * Returns a lazy stream over the transition variants of a path: every sequence taking one
+     * distinct transition per step, the last step varying first.
+     *
+     * @param path of nodes in the graph, ending at the super sink node.
+     * @return stream of edge sequences, removing initial and final states.
+     */
+    public Stream<Edge[]> pathEdgeVariants(Path path) {
+        Edge[][] steps = getPathEdgeVariants(path);
+        for (Edge[] step : steps)
+            if (step.length == 0)
+                return Stream.empty();
+
+        Iterator<Edge[]> it = new Iterator<>() {
+            private final int[] choice = new int[steps.length];
+            private boolean more = true;
+
+            @Override
+            public boolean hasNext() {
+                return more;
+            }
 
-                edgesById.put(srcId + EDGE_CHAR.trim() + dstId, edge);
+            @Override
+            public Edge[] next() {
+                if (!more)
+                    throw new NoSuchElementException();
 
-            } else if (isNodeDescription(line)) {
-                State state = parser.parse(trimmedLine.split(QUOTE)[1]);
-                long dotId = Long.parseLong(trimmedLine.split(SPACE)[0]);
-                int nodeId = nodesById.get(dotId);
-                states[nodeId] = state;
+                Edge[] sequence = new Edge[steps.length];
+                for (int i = 0; i < steps.length; i++)
+                    sequence[i] = steps[i][choice[i]];
 
-                // Adds an edge from all the final states to the super sink node.
-                if (state.isFinalState()) {
-                    edge = new Edge(nodeId, finalState, FINAL, new String[INITIAL_PARAMS]);
-                    outgoing[nodeId].add(edge);
-                    incoming[finalState].add(edge);
-                }
+                // Odometer increment
+                int i = steps.length - 1;
+                while (i >= 0 && ++choice[i] == steps[i].length)
+                    choice[i--] = 0;
+                more = i >= 0;
+
+                return sequence;
             }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
 
-            line = buff.readLine();
+    /**
+     * Looks up the edges between consecutive nodes of a path.
+     *
+     * @param path      path of nodes in the graph.
+     * @param pathEdges array to fill; its length is the number of edges to look up.
+     */
+    private void resolveEdges(Path path, Edge[] pathEdges) {
+        int id;
+        for (int i = 0; i < pathEdges.length; i++) {
+            id = edgeIndex.get(path.node(i), path.node(i + 1));
+            pathEdges[i] = id == EdgeIndex.NONE ? null : edges[id];
         }
+    }
 
-        buff.close();
+    /**
+     * Returns an array of the edge transitions. Kept for backward compatibility: use
+     * {@link #getPathEdges(Path)}.
+     *
+     * @param path of nodes in the graph, ending at the super sink node.
+     * @return array of edge transitions.
+     * @deprecated use {@link #getPathEdges(Path)}, or {@link #getPathEdges(List)} for many paths.
+     */
+    @Deprecated
+    public Edge[] getPathEdges(Deque<Integer> path) {
+        return getPathEdges(Path.of(path));
     }
 
+    // Graph construction
+
     /**
-     * Process transition operation parameters
+     * Initialises the graph from the nodes and edges read by the loader. The super sink node
+     * takes the last index.
      *
-     * @param label  edge label description (dot). E.g. label="postEnrollment(e1, t1, p1)"
-     * @return an array of TLA model value IDs.
+     * @param loader  loader that has read the DOT file.
+     * @param options load options.
+     */
+    private void build(DotLoader loader, LoadOptions options) {
+        this.loader = loader;
+        nodesById = loader.nodesById();
+        numNodes = loader.numNodes() + 1;
+        numEdges = loader.numDotEdges();
+        finalState = numNodes - 1;
+        states = loader.states();
+        labels = loader.labels(options.getStateCacheSize());
+        labels.countParses(metrics);
+        finalStates = loader.finalStates();
+        symbols = new EdgeSymbols();
+        edges = loader.edges(finalState, symbols);
+
+        indexEdges();
+        freezeAdjacency();
+    }
+
+    /**
+     * Records the transition and parameter tuple ids of the edges, whose labels were interned
+     * when they were built, and indexes the edges described in the DOT file by their source and
+     * destination. Parallel edges are all kept.
+     */
+    private void indexEdges() {
+        edgeTransition = new int[edges.length];
+        edgeTuple = new int[edges.length];
+        edgeIndex = new EdgeIndex(numEdges);
+        indexEdges(0);
+    }
+
+    /**
+     * Records the label ids of the edges from the given edge id on, and indexes them.
+     *
+     * @param from first edge id.
+     */
+    private void indexEdges(int from) {
+        if (edgeTransition.length < edges.length) {
+            edgeTransition = Arrays.copyOf(edgeTransition, edges.length);
+            edgeTuple = Arrays.copyOf(edgeTuple, edges.length);
+        }
+
+        for (int e = from; e < edges.length; e++) {
+            Edge edge = edges[e];
+            edgeTransition[e] = symbols.internTransition(edge.getTransition());
+            edgeTuple[e] = symbols.internTuple(edge.parameters());
+
+            if (edge.getDst() != finalState)
+                edgeIndex.add(edge.getSrc(), edge.getDst(), e);
+        }
+    }
+
+    /**
+     * Builds the outgoing and incoming adjacency from the edge table. The adjacency is frozen:
+     * edges can no longer be added afterwards.
      */
-    private String[] processParameters(String label) {
-        // Split by "("; remove ")"; then split by ","
-        return label.split("\\(")[1].replace(")", "").split(",");
+    private void freezeAdjacency() {
+        int[] src = new int[edges.length];
+        int[] dst = new int[edges.length];
+        for (int e = 0; e < edges.length; e++) {
+            src[e] = edges[e].getSrc();
+            dst[e] = edges[e].getDst();
+        }
+
+        outgoing = CsrAdjacency.build(numNodes, edges.length, src, dst);
+        incoming = CsrAdjacency.build(numNodes, edges.length, dst, src);
     }
 
     /**
-     * Checks whether a DOT file line corresponds to a node description.
+     * Adds the nodes and edges of the loader's last read. Existing edges to the super sink are
+     * moved to its new index; the adjacency is extended in a single pass over its arrays.
      *
-     * @param line DOT file line.
-     * @return true if the line is a node description; false otherwise.
+     * @return true if the graph changed; false otherwise.
      */
-    private boolean isNodeDescription(String line) {
-        return line.contains(LABEL) && !line.contains(EDGE_CHAR);
+    private boolean extend() {
+        int oldSink = finalState;
+        int firstEdge = edges.length;
+        int sink = loader.numNodes();
+        Edge[] added = loader.edges(sink, symbols);
+        if (sink == oldSink && added.length == 0)
+            return false;
+
+        numNodes = sink + 1;
+        numEdges = loader.numDotEdges();
+        finalState = sink;
+        states = loader.states();
+
+        edges = Arrays.copyOf(edges, firstEdge + added.length);
+        System.arraycopy(added, 0, edges, firstEdge, added.length);
+        if (sink != oldSink) {
+            for (int slot = incoming.start(oldSink); slot < incoming.end(oldSink); slot++) {
+                int e = incoming.edge(slot);
+                edges[e] = new Edge(edges[e].getSrc(), sink, edges[e].getTransition(),
+                        edges[e].parameters());
+            }
+        }
+        indexEdges(firstEdge);
+
+        int[] src = new int[added.length];
+        int[] dst = new int[added.length];
+        for (int e = 0; e < added.length; e++) {
+            src[e] = added[e].getSrc();
+            dst[e] = added[e].getDst();
+        }
+        IntUnaryOperator renumber = v -> v == oldSink ? sink : v;
+        outgoing = outgoing.extend(numNodes, renumber, firstEdge, src, dst);
+        incoming = incoming.extend(numNodes, renumber, firstEdge, dst, src);
+
+        // Distances only shorten and are updated from the new edges. Any new edge may change the
+        // BFS trees the paths are built on, and merge components: those are computed again
+        if (distances != null)
+            distances = distances.extend(outgoing, incoming, oldSink, src, dst);
+        condensation = null;
+        pathIndex = null;
+        pathSampler = null;
+        return true;
     }
 
     /**
-     * Checks whether a DOT file line corresponds to an edge description.
+     * Returns the loader that read the graph, which goes on reading the lines added to it.
      *
-     * @param line DOT file line.
-     * @return true if the line is an edge description; false otherwise.
+     * @return DOT loader.
      */
-    private boolean isEdgeDescription(String line) {
-        return line.contains(EDGE_CHAR);
+    private DotLoader incrementalLoader() {
+        if (loader == null)
+            throw new IllegalStateException(NOT_FROM_DOT);
+        return loader;
+    }
+
+    // Snapshot access
+
+    Map<Long, Integer> nodesById() {
+        return nodesById;
+    }
+
+    Edge[] edges() {
+        return edges;
+    }
+
+    CsrAdjacency outgoing() {
+        return outgoing;
+    }
+
+    CsrAdjacency incoming() {
+        return incoming;
+    }
+
+    StateLabels labels() {
+        return labels;
+    }
+
+    BitSet finalStates() {
+        return finalStates;
+    }
+
+    // Coverage access
+
+    int finalState() {
+        return finalState;
+    }
+
+    EdgeIndex edgeIndex() {
+        return edgeIndex;
+    }
+
+    int[] edgeTransitions() {
+        return edgeTransition;
+    }
+
+    int[] edgeTuples() {
+        return edgeTuple;
     }
 
     // Debugging - TODO remove
@@ -419,12 +929,16 @@ public class StateSpaceGraph {
     public String edgesToString() {
         StringBuilder s = new StringBuilder();
 
-        for (Map.Entry<String, Edge> e : edgesById.entrySet())
-            s.append(e.getKey())
+        for (Edge edge : edges) {
+            if (edge.getDst() == finalState)
+                continue;
+
+            s.append(edge.getSrc()).append(EDGE_CHAR).append(edge.getDst())
                     .append(": ")
-                    .append(e.getValue().getTransition())
-                    .append(Arrays.toString(e.getValue().getParameters()))
+                    .append(edge.getTransition())
+                    .append(Arrays.toString(edge.parameters()))
                     .append("\n");
+        }
 
         return s.toString();
     }
@@ -435,23 +949,29 @@ public class StateSpaceGraph {
      * @param paths collection.
      * @return representation of the given structure
      */
-    public String pathsToString(List<Deque<Integer>> paths) {
+    public String pathListToString(List<Path> paths) {
         StringBuilder s = new StringBuilder("Number of paths: ");
         s.append(paths.size()).append("\n");
 
-        for (Deque<Integer> path : paths) {
-            s.append("{");
-
-            for (Integer n : path)
-                s.append(n).append(", ");
-
-            s.delete(s.length() - 2, s.length());
-            s.append("}\n");
-        }
+        for (Path path : paths)
+            s.append(path).append("\n");
 
         return s.toString();
     }
 
+    /**
+     * Returns a string representation of the given deques. Kept for backward compatibility: use
+     * {@link #pathListToString(List)}.
+     *
+     * @param paths collection.
+     * @return representation of the given structure
+     * @deprecated use {@link #pathListToString(List)}.
+     */
+    @Deprecated
+    public String pathsToString(List<Deque<Integer>> paths) {
+        return pathListToString(toPaths(paths));
+    }
+
     /**
      * Graph to string.
      *
@@ -460,22 +980,17 @@ public class StateSpaceGraph {
      */
     public String toString(boolean in) {
         StringBuilder s = in ? new StringBuilder("incoming: \n") : new StringBuilder("outgoing: \n");
-        List<Edge>[] toPrint = in ? incoming : outgoing;
+        CsrAdjacency toPrint = in ? incoming : outgoing;
 
-        for (int i = 0; i < toPrint.length; i++) {
+        for (int i = 0; i < numNodes; i++) {
             s.append(i).append(": {");
 
-            for (Edge e : toPrint[i])
-                if (in)
-                    s.append(e.getSrc())
-                            .append(" (").append(e.getTransition()).append(")")
-                            .append("; ");
-                else
-                    s.append(e.getDst())
-                            .append(" (").append(e.getTransition()).append(")")
-                            .append("; ");
-
-            if (!toPrint[i].isEmpty())
+            for (int j = toPrint.start(i); j < toPrint.end(i); j++)
+                s.append(toPrint.target(j))
+                        .append(" (").append(edges[toPrint.edge(j)].getTransition()).append(")")
+                        .append("; ");
+
+            if (toPrint.degree(i) > 0)
                 s.delete(s.length() - 2, s.length());
 
             s.append("}\n");
@@ -507,21 +1022,40 @@ public class StateSpaceGraph {
      * @param wanted       number of paths asked by the user.
      * @param elapsedTime  total time elapsed since the start of the program, in minutes.
      */
-    public void printStats(String fileName, List<Deque<Integer>> paths, int wanted,
-                           float elapsedTime) {
+    public void printPathStats(String fileName, List<Path> paths, int wanted,
+                               float elapsedTime) {
+        PathStats stats = PathStats.of(paths);
+
         System.out.println(STATS);
         System.out.printf("dot file name    :   %s\n", fileName);
         System.out.printf("nodes           :   %d\n", getNumNodes());
         System.out.printf("edges           :   %d\n", getNumEdges());
         System.out.printf("wanted paths    :   %d\n", wanted);
         System.out.printf("distinct paths  :   %d\n", paths.size());
-        System.out.printf("avg size        :   %d\n", Math.round(PathPruner.averagePathSize(paths)));
-        System.out.printf("max size        :   %d\n", PathPruner.largestPathSize(paths));
-        System.out.printf("min size        :   %d\n", PathPruner.shortestPathSize(paths));
+        System.out.printf("avg size        :   %d\n", Math.round(stats.mean()));
+        System.out.printf("max size        :   %d\n", stats.max());
+        System.out.printf("min size        :   %d\n", stats.min());
+        System.out.printf("median size     :   %d\n", stats.percentile(50));
         System.out.printf("elapsed time    :   %.2f mins\n", elapsedTime);
         System.out.println(SPLIT);
     }
 
+    /**
+     * Prints the graph and path statistics of the given deques. Kept for backward compatibility:
+     * use {@link #printPathStats(String, List, int, float)}.
+     *
+     * @param fileName      dot file name.
+     * @param paths        collection.
+     * @param wanted       number of paths asked by the user.
+     * @param elapsedTime  total time elapsed since the start of the program, in minutes.
+     * @deprecated use {@link #printPathStats(String, List, int, float)}.
+     */
+    @Deprecated
+    public void printStats(String fileName, List<Deque<Integer>> paths, int wanted,
+                           float elapsedTime) {
+        printPathStats(fileName, toPaths(paths), wanted, elapsedTime);
+    }
+
     /**
      * Prints graph data.
      */
@@ -540,9 +1074,41 @@ public class StateSpaceGraph {
         System.out.println(toString(false)); // outgoing
     }
 
-    public void printPaths(List<Deque<Integer>> paths) {
+    /**
+     * Prints the timers and counters of the graph's phases.
+     */
+    public void printMetrics() {
+        System.out.println(METRICS);
+        System.out.print(metrics);
+        System.out.println(SPLIT);
+    }
+
+    public void printPathList(List<Path> paths) {
         System.out.println(PATHS);
-        System.out.println(pathsToString(paths));
+        System.out.println(pathListToString(paths));
+    }
+
+    /**
+     * Prints the given deques. Kept for backward compatibility: use {@link #printPathList(List)}.
+     *
+     * @param paths collection.
+     * @deprecated use {@link #printPathList(List)}.
+     */
+    @Deprecated
+    public void printPaths(List<Deque<Integer>> paths) {
+        printPathList(toPaths(paths));
+    }
+
+    /**
+     * Converts deques to paths.
+     *
+     * @param paths deques of node indexes.
+     * @return paths, in the same order.
+     */
+    private static List<Path> toPaths(List<Deque<Integer>> paths) {
+        return paths.stream()
+                .map(Path::of)
+                .toList();
     }
 
 }
@@ -0,0 +1,341 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Complete paths that unroll the cycles of each strongly connected component a bounded number of
+ * times. Within a component, the edges that close a cycle (see {@link Condensation}) are feedback
+ * edges: a path may take at most [unroll] of them while it stays in the component, and the count
+ * starts over in the next component. Paths are walks: with an unrolling limit above 0, they can
+ * go through a node more than once.
+ * <p>
+ * A path is a walk over layered states (node, feedback edges taken in its component). Components
+ * come in topological order and feedback edges go one layer up, so the states form a DAG: the
+ * paths from each state are counted once, from the super sink back, in O((unroll + 1) * (N + E))
+ * time and O((unroll + 1) * N) memory, only cyclic components using layers above 0. The paths do
+ * not depend on any traversal order, so counts and samples are the same on every run. Paths are
+ * counted with their multiplicity, as {@link PathSampler} counts them.
+ * <p>
+ * Supported sizes: up to Integer.MAX_VALUE states, i.e. (unroll + 1) * N. A TLC graph with one
+ * large cyclic component easily has more than Long.MAX_VALUE paths, even with a limit of 0:
+ * counts then saturate at Long.MAX_VALUE (see {@link #isSaturated()}), and paths are drawn from
+ * the natural logarithm of each count instead, in double precision. Enumeration still works,
+ * but only makes sense with a visitor that stops early.
+ * <p>
+ * With a limit of 0 no feedback edge is taken: within a component, a path only follows edges to
+ * nodes the DFS finished earlier, so some nodes of a component may only be reached from its entry
+ * with a limit of 1 or more.
+ */
+public final class UnrolledPaths {
+
+    private static final int NONE = -1;
+
+    // Exceptions
+    private static final String BAD_UNROLL = "Unrolling limit must not be negative: %d.";
+    private static final String TOO_LARGE = "Unrolling limit too large for %d nodes: %d.";
+    private static final String NO_PATHS = "The graph has no complete paths.";
+    private static final String BAD_SAMPLES = "The number of samples must not be negative.";
+
+    private final Condensation condensation;
+    private final CsrAdjacency outgoing;
+    private final int initial;
+    private final int finalState;
+    private final int unroll;
+    private final int numNodes;
+    private final long[] count;         // paths from each state (node, layer): layer * N + node,
+                                        // saturated at Long.MAX_VALUE
+    private final double[] logCount;    // natural logarithm of the paths from each state
+    private final BitSet live;          // states some path to the super sink goes through
+
+    /**
+     * Counts the paths of a graph with the given unrolling limit.
+     *
+     * @param condensation components of the graph.
+     * @param outgoing     outgoing adjacency.
+     * @param initial      initial state index.
+     * @param finalState   super sink index.
+     * @param unroll       feedback edges a path may take in each component.
+     */
+    UnrolledPaths(Condensation condensation, CsrAdjacency outgoing, int initial, int finalState,
+                  int unroll) {
+        numNodes = outgoing.numNodes();
+        if (unroll < 0)
+            throw new IllegalArgumentException(String.format(BAD_UNROLL, unroll));
+        if ((long) (unroll + 1) * numNodes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(String.format(TOO_LARGE, numNodes, unroll));
+
+        this.condensation = condensation;
+        this.outgoing = outgoing;
+        this.initial = initial;
+        this.finalState = finalState;
+        this.unroll = unroll;
+        count = new long[(unroll + 1) * numNodes];
+        logCount = new double[count.length];
+        live = new BitSet(count.length);
+
+        // Successor states come first: later components, upper layers, earlier post-order
+        int[] members = condensation.members();
+        for (int c = condensation.numComponents() - 1; c >= 0; c--) {
+            int top = condensation.isCyclic(c) ? unroll : 0;
+            for (int layer = top; layer >= 0; layer--) {
+                for (int m = condensation.memberStart(c); m < condensation.memberStart(c + 1); m++) {
+                    int node = members[m];
+                    int state = layer * numNodes + node;
+                    if (node == finalState) {
+                        count[state] = 1;
+                        live.set(state);
+                        continue;
+                    }
+
+                    long paths = 0;
+                    double logPaths = Double.NEGATIVE_INFINITY;
+                    for (int slot = outgoing.start(node); slot < outgoing.end(node); slot++) {
+                        int next = next(state, slot);
+                        if (next == NONE || !live.get(next))
+                            continue;
+                        paths = saturatedAdd(paths, count[next]);
+                        logPaths = logAdd(logPaths, logCount[next]);
+                    }
+                    count[state] = paths;
+                    logCount[state] = logPaths;
+                    if (paths > 0)
+                        live.set(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of feedback edges a path may take in each component.
+     *
+     * @return unrolling limit.
+     */
+    public int unroll() {
+        return unroll;
+    }
+
+    /**
+     * Returns the number of complete paths, or Long.MAX_VALUE when there are at least as many.
+     *
+     * @return number of paths, saturated at Long.MAX_VALUE.
+     * @see #isSaturated()
+     * @see #logCountPaths()
+     */
+    public long countPaths() {
+        return count[initial];
+    }
+
+    /**
+     * Checks whether the number of complete paths does not fit in a long, i.e. whether
+     * {@link #countPaths()} only gives a lower bound.
+     *
+     * @return true if there are Long.MAX_VALUE paths or more.
+     */
+    public boolean isSaturated() {
+        return count[initial] == Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the natural logarithm of the number of complete paths, in double precision. Unlike
+     * {@link #countPaths()}, it does not saturate.
+     *
+     * @return logarithm of the number of paths; negative infinity if there are none.
+     */
+    public double logCountPaths() {
+        return logCount[initial];
+    }
+
+    /**
+     * Visits every complete path, depth first, following each node's edges in adjacency order.
+     * The visitor can stop the enumeration early.
+     *
+     * @param visitor path visitor.
+     */
+    public void forEach(PathVisitor visitor) {
+        if (countPaths() == 0)
+            return;
+
+        int[] path = new int[16];           // nodes of the current path
+        int[] states = new int[16];         // state of each node
+        int[] slots = new int[16];          // next edge slot of each state
+        int depth = 0;
+        states[0] = initial;
+        slots[0] = outgoing.start(initial);
+        path[0] = initial;
+
+        while (depth >= 0) {
+            int state = states[depth];
+            int node = path[depth];
+            if (node == finalState) {
+                if (!visitor.visit(path, depth + 1))
+                    return;
+                depth--;
+                continue;
+            }
+
+            // Next edge leading to some path, if any is left
+            int next = NONE;
+            while (next == NONE && slots[depth] < outgoing.end(node)) {
+                next = next(state, slots[depth]++);
+                if (next != NONE && !live.get(next))
+                    next = NONE;
+            }
+            if (next == NONE) {
+                depth--;
+                continue;
+            }
+
+            if (++depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+                states = Arrays.copyOf(states, depth * 2);
+                slots = Arrays.copyOf(slots, depth * 2);
+            }
+            path[depth] = next % numNodes;
+            states[depth] = next;
+            slots[depth] = outgoing.start(path[depth]);
+        }
+    }
+
+    /**
+     * Draws random complete paths, every path with the same probability. Paths are drawn
+     * independently, so the sample may hold the same path more than once.
+     *
+     * @param samples number of paths to draw.
+     * @param random  source of randomness.
+     * @return sampled paths, from the initial state to the super sink node.
+     * @throws IllegalStateException when the graph has no complete paths.
+     */
+    public List<Path> sample(int samples, RandomGenerator random) {
+        if (samples < 0)
+            throw new IllegalArgumentException(BAD_SAMPLES);
+        if (samples > 0 && countPaths() == 0)
+            throw new IllegalStateException(NO_PATHS);
+
+        List<Path> paths = new ArrayList<>(samples);
+        for (int i = 0; i < samples; i++)
+            paths.add(Path.wrap(draw(random)));
+        return paths;
+    }
+
+    /**
+     * Draws a path: each edge is taken in proportion to the paths following it. Exact counts are
+     * used while they fit in a long, the logarithms of the counts otherwise.
+     *
+     * @param random source of randomness.
+     * @return path.
+     */
+    private int[] draw(RandomGenerator random) {
+        if (isSaturated())
+            return drawByLog(random);
+
+        long x = random.nextLong(countPaths());
+        int[] path = new int[16];
+        int length = 0;
+
+        int state = initial;
+        while (true) {
+            int node = state % numNodes;
+            if (length == path.length)
+                path = Arrays.copyOf(path, length * 2);
+            path[length++] = node;
+            if (node == finalState)
+                return Arrays.copyOf(path, length);
+
+            for (int slot = outgoing.start(node); ; slot++) {
+                int next = next(state, slot);
+                if (next == NONE)
+                    continue;
+                if (x < count[next]) {
+                    state = next;
+                    break;
+                }
+                x -= count[next];
+            }
+        }
+    }
+
+    /**
+     * Draws a path from the logarithms of the counts: at each state, an edge is taken with the
+     * fraction of the state's paths that follow it. Rounding errors fall on the state's last
+     * live edge.
+     *
+     * @param random source of randomness.
+     * @return path.
+     */
+    private int[] drawByLog(RandomGenerator random) {
+        int[] path = new int[16];
+        int length = 0;
+
+        int state = initial;
+        while (true) {
+            int node = state % numNodes;
+            if (length == path.length)
+                path = Arrays.copyOf(path, length * 2);
+            path[length++] = node;
+            if (node == finalState)
+                return Arrays.copyOf(path, length);
+
+            double x = random.nextDouble();
+            int chosen = NONE;
+            for (int slot = outgoing.start(node); slot < outgoing.end(node); slot++) {
+                int next = next(state, slot);
+                if (next == NONE || !live.get(next))
+                    continue;
+                chosen = next;
+                x -= Math.exp(logCount[next] - logCount[state]);
+                if (x < 0)
+                    break;
+            }
+            state = chosen;
+        }
+    }
+
+    /**
+     * Adds two counts, saturating at Long.MAX_VALUE.
+     *
+     * @param a count.
+     * @param b count.
+     * @return sum, at most Long.MAX_VALUE.
+     */
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Adds two numbers given by their logarithms.
+     *
+     * @param a logarithm of a number.
+     * @param b logarithm of a number.
+     * @return logarithm of the sum.
+     */
+    private static double logAdd(double a, double b) {
+        double max = Math.max(a, b);
+        if (max == Double.NEGATIVE_INFINITY)
+            return max;
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+
+    /**
+     * Returns the state an edge leads to: the first layer of another component, the same layer
+     * of the component, or the layer above for a feedback edge.
+     *
+     * @param state source state.
+     * @param slot  edge slot of the source node.
+     * @return next state; NONE if the edge is a feedback edge and the limit is reached.
+     */
+    private int next(int state, int slot) {
+        int node = state % numNodes;
+        int layer = state / numNodes;
+        int target = outgoing.target(slot);
+        if (condensation.component(target) != condensation.component(node))
+            return target;
+        if (!condensation.isFeedback(node, target))
+            return state - node + target;
+        return layer < unroll ? state + numNodes - node + target : NONE;
+    }
+}
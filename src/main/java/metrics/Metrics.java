@@ -0,0 +1,267 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timers and counters of the phases a state space graph goes through, from reading the DOT file
+ * to sampling paths. Counters are added to in batches (per chunk, per traversal, per sample), so
+ * keeping them costs nothing on the hot paths. Metrics can be updated from several threads.
+ * <p>
+ * Each timed phase records its wall-clock time, the bytes allocated by the thread running it,
+ * and how far the heap rose above its usage at the start of the phase. Phases also emit a
+ * {@link PhaseEvent}, recorded when a JFR recording enables it (e.g. -XX:StartFlightRecording).
+ * Heap usage is JVM-wide: it includes whatever else runs at the same time, e.g. phases timed on
+ * other graphs. Timers only read the heap pools, so they never disturb each other.
+ */
+public final class Metrics {
+
+    /**
+     * Timed phases.
+     */
+    public enum Phase {
+        LOAD,           // reading DOT lines into the graph, on load and on refresh
+        TRAVERSAL,      // the forward and backward BFS traversals
+        COUNTING,       // counting the paths through each node
+        COMPLETION,     // completing the incomplete paths
+        SAMPLING,       // drawing sample paths
+        ENUMERATION,    // visiting every complete path
+        SELECTION       // selecting paths by coverage
+    }
+
+    /**
+     * Counted quantities. Most add up; the ones marked as peaks keep their largest value.
+     */
+    public enum Counter {
+        DOT_BYTES,          // DOT bytes read
+        LINES,              // DOT lines scanned
+        STATES_PARSED,      // states parsed, while loading and on demand
+        NODES,              // nodes added
+        EDGES,              // DOT edges added
+        BFS_LEVELS,         // levels of the forward traversal (peak)
+        FRONTIER_PEAK,      // nodes in the largest level of the forward traversal (peak)
+        INCOMPLETE_PATHS,   // paths ending at an already found node
+        COMPLETE_PATHS,     // paths ending at the super sink, once completed
+        SPILLED_BYTES,      // bytes of complete paths written to run files
+        SAMPLE_DRAWS,       // paths drawn while sampling
+        DUPLICATE_DRAWS     // draws rejected as already in the sample
+    }
+
+    private static final double MILLIS = 1e6;
+    private static final double MEGABYTES = 1024 * 1024;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+    private static final List<MemoryPoolMXBean> HEAP = ManagementFactory.getMemoryPoolMXBeans()
+            .stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private final AtomicLongArray calls = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray allocated = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray peakHeap = new AtomicLongArray(Phase.values().length);
+
+    /**
+     * Starts timing a phase. Close the timer when the phase ends, e.g. with try-with-resources:
+     * {@code Metrics.Timer load = metrics.time(Phase.LOAD); try (load) { ... }}.
+     *
+     * @param phase phase.
+     * @return running timer.
+     */
+    public Timer time(Phase phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter counter.
+     * @param delta   amount to add.
+     */
+    public void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    /**
+     * Raises a peak counter to the given value, if it is larger.
+     *
+     * @param counter peak counter.
+     * @param value   observed value.
+     */
+    public void max(Counter counter, long value) {
+        counters.accumulateAndGet(counter.ordinal(), value, Math::max);
+    }
+
+    /**
+     * Returns the value of a counter.
+     *
+     * @param counter counter.
+     * @return value.
+     */
+    public long count(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * Returns the number of times a phase ran.
+     *
+     * @param phase phase.
+     * @return number of runs.
+     */
+    public long calls(Phase phase) {
+        return calls.get(phase.ordinal());
+    }
+
+    /**
+     * Returns the time spent in a phase, over all its runs.
+     *
+     * @param phase phase.
+     * @return elapsed nanoseconds.
+     */
+    public long nanos(Phase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    /**
+     * Returns the bytes allocated by the threads running a phase, over all its runs. Work the
+     * phase hands to other threads (e.g. parallel loading) is not included.
+     *
+     * @param phase phase.
+     * @return allocated bytes; 0 if the JVM does not measure allocation.
+     */
+    public long allocatedBytes(Phase phase) {
+        return allocated.get(phase.ordinal());
+    }
+
+    /**
+     * Returns the largest rise of the heap while a phase ran, over all its runs: how far the
+     * heap pools' usage went above their usage at the start of the run. The pools keep their
+     * peak since the JVM started, so a rise is only seen when a run raises a pool's peak;
+     * otherwise the usage at the end of the run is taken. Heap usage is JVM-wide, not the
+     * phase's own allocation: see {@link #allocatedBytes(Phase)}.
+     *
+     * @param phase phase.
+     * @return peak heap bytes above the usage at the start of the phase.
+     */
+    public long peakHeapBytes(Phase phase) {
+        return peakHeap.get(phase.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder(String.format(Locale.ROOT, "%-16s%8s%12s%16s%16s\n",
+                "phase", "calls", "time (ms)", "alloc (MB)", "heap rise (MB)"));
+        for (Phase phase : Phase.values())
+            if (calls(phase) > 0)
+                s.append(String.format(Locale.ROOT, "%-16s%8d%12.1f%16.1f%16.1f\n",
+                        name(phase), calls(phase), nanos(phase) / MILLIS,
+                        allocatedBytes(phase) / MEGABYTES, peakHeapBytes(phase) / MEGABYTES));
+
+        s.append(String.format(Locale.ROOT, "%-24s%16s\n", "counter", "value"));
+        for (Counter counter : Counter.values())
+            s.append(String.format(Locale.ROOT, "%-24s%16d\n", name(counter), count(counter)));
+
+        return s.toString();
+    }
+
+    private static String name(Enum<?> constant) {
+        return constant.name().toLowerCase(Locale.ROOT).replace('_', ' ');
+    }
+
+    private static long allocatedByThisThread() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static long[] heapUsed() {
+        long[] used = new long[HEAP.size()];
+        for (int i = 0; i < used.length; i++)
+            used[i] = HEAP.get(i).getUsage().getUsed();
+        return used;
+    }
+
+    private static long[] heapPeaks() {
+        long[] peaks = new long[HEAP.size()];
+        for (int i = 0; i < peaks.length; i++)
+            peaks[i] = HEAP.get(i).getPeakUsage().getUsed();
+        return peaks;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    /**
+     * Running measure of a phase.
+     */
+    public final class Timer implements AutoCloseable {
+
+        private final Phase phase;
+        private final PhaseEvent event;
+        private final long start;
+        private final long startAllocated;
+        private final long[] startUsed;     // usage of each heap pool at the start
+        private final long[] startPeaks;    // peak of each heap pool at the start
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+            startUsed = heapUsed();
+            startPeaks = heapPeaks();
+
+            event = new PhaseEvent();
+            event.begin();
+            startAllocated = allocatedByThisThread();
+            start = System.nanoTime();
+        }
+
+        /**
+         * Ends the phase and records its measures.
+         */
+        @Override
+        public void close() {
+            long elapsed = System.nanoTime() - start;
+            long bytes = allocatedByThisThread() - startAllocated;
+            long peak = heapRise();
+
+            int p = phase.ordinal();
+            calls.incrementAndGet(p);
+            nanos.addAndGet(p, elapsed);
+            allocated.addAndGet(p, bytes);
+            peakHeap.accumulateAndGet(p, peak, Math::max);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.name();
+                event.allocated = bytes;
+                event.peakHeap = peak;
+                event.commit();
+            }
+        }
+
+        /**
+         * Measures how far the heap rose above its usage at the start: a pool whose peak went
+         * up reached its new peak during the phase; any other pool counts with its current use.
+         *
+         * @return bytes above the usage at the start, at least 0.
+         */
+        private long heapRise() {
+            long[] used = heapUsed();
+            long[] peaks = heapPeaks();
+            long rise = 0;
+            for (int i = 0; i < used.length; i++) {
+                long high = peaks[i] > startPeaks[i] ? peaks[i] : used[i];
+                rise += high - startUsed[i];
+            }
+            return Math.max(rise, 0);
+        }
+    }
+}
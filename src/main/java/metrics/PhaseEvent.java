@@ -0,0 +1,31 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a timed phase of a state space graph. Its duration is the phase's.
+ */
+@Name("icepick.Phase")
+@Label("State Space Graph Phase")
+@Category("State Space Graph")
+@Description("A phase of loading a state space graph or generating its paths.")
+class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the thread running the phase.")
+    @DataAmount
+    long allocated;
+
+    @Label("Peak Heap")
+    @Description("Largest JVM-wide heap usage above the usage at the start of the phase.")
+    @DataAmount
+    long peakHeap;
+}
@@ -0,0 +1,179 @@
+package pruning;
+
+import graph.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Set of distinct paths, keyed on a 64-bit fingerprint of their nodes. Fingerprints live in a
+ * primitive open-addressing table next to the id of the path they belong to; paths with the same
+ * fingerprint are compared node by node, so fingerprint collisions never merge different paths.
+ */
+public class PathDeduplicator {
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long PRIME = 0x100000001b3L;       // FNV-1a 64-bit prime
+    private static final long OFFSET = 0xcbf29ce484222325L; // FNV-1a 64-bit offset basis
+
+    private final IntFunction<Path> pathOf;   // path of a stored id
+    private final List<Path> distinct;        // paths added, when they are kept here
+
+    private long[] fingerprints;
+    private int[] ids;
+    private int size;
+
+    /**
+     * Creates an empty set that keeps the distinct paths added to it.
+     */
+    public PathDeduplicator() {
+        this.distinct = new ArrayList<>();
+        this.pathOf = distinct::get;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty set over the positions of a path list, which keeps the paths.
+     *
+     * @param paths path list.
+     */
+    private PathDeduplicator(List<Path> paths) {
+        this.distinct = null;
+        this.pathOf = paths::get;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Counts the distinct paths of a list, keeping only fingerprints and positions.
+     *
+     * @param paths path list.
+     * @return number of distinct paths.
+     */
+    public static int countDistinct(List<Path> paths) {
+        PathDeduplicator set = new PathDeduplicator(paths);
+        for (int i = 0; i < paths.size(); i++)
+            set.add(paths.get(i), i);
+        return set.size();
+    }
+
+    /**
+     * Computes the 64-bit fingerprint of a path: FNV-1a over the nodes, followed by a final mix
+     * so that nearby paths spread over the table.
+     *
+     * @param path path.
+     * @return fingerprint.
+     */
+    public static long fingerprint(Path path) {
+        long h = OFFSET;
+        for (int i = 0; i < path.size(); i++)
+            h = (h ^ path.node(i)) * PRIME;
+
+        // MurmurHash3 finaliser
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Adds a path if it is not already in the set.
+     *
+     * @param path path to add.
+     * @return true if the path was added; false if it was already there.
+     */
+    public boolean add(Path path) {
+        if (!add(path, distinct.size()))
+            return false;
+
+        distinct.add(path);
+        return true;
+    }
+
+    /**
+     * Checks whether a path is in the set.
+     *
+     * @param path path.
+     * @return true if an equal path was added.
+     */
+    public boolean contains(Path path) {
+        long print = fingerprint(path);
+        for (int slot = slot(print); ids[slot] != EMPTY; slot = (slot + 1) & (ids.length - 1))
+            if (fingerprints[slot] == print && pathOf.apply(ids[slot]).equals(path))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the number of distinct paths added.
+     *
+     * @return set size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the distinct paths, in the order they were added.
+     *
+     * @return distinct paths.
+     */
+    public List<Path> paths() {
+        return distinct;
+    }
+
+    /**
+     * Stores a path id under the path's fingerprint, unless an equal path is already stored.
+     *
+     * @param path path.
+     * @param id   id under which pathOf returns the path.
+     * @return true if the path was stored.
+     */
+    private boolean add(Path path, int id) {
+        long print = fingerprint(path);
+        int slot = slot(print);
+        for (; ids[slot] != EMPTY; slot = (slot + 1) & (ids.length - 1))
+            if (fingerprints[slot] == print && pathOf.apply(ids[slot]).equals(path))
+                return false;
+
+        fingerprints[slot] = print;
+        ids[slot] = id;
+        if (++size * 2 > ids.length)
+            grow();
+        return true;
+    }
+
+    private int slot(long print) {
+        return (int) print & (ids.length - 1);
+    }
+
+    private void allocate(int capacity) {
+        fingerprints = new long[capacity];
+        ids = new int[capacity];
+        Arrays.fill(ids, EMPTY);
+    }
+
+    /**
+     * Doubles the table, keeping every stored fingerprint.
+     */
+    private void grow() {
+        long[] oldFingerprints = fingerprints;
+        int[] oldIds = ids;
+        allocate(oldIds.length * 2);
+
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] == EMPTY)
+                continue;
+
+            int slot = slot(oldFingerprints[i]);
+            while (ids[slot] != EMPTY)
+                slot = (slot + 1) & (ids.length - 1);
+            fingerprints[slot] = oldFingerprints[i];
+            ids[slot] = oldIds[i];
+        }
+    }
+}
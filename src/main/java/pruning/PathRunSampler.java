@@ -0,0 +1,312 @@
+package pruning;
+
+import graph.Path;
+import graph.PathRuns;
+import metrics.Metrics;
+import metrics.Metrics.Counter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples paths written to runs, with the same distribution as {@link PathSizeSampler}: a path
+ * size is picked with probability proportional to the number of paths of that size, then a path
+ * of that size uniformly. Only the size histogram is kept in memory. Draws pick a position among
+ * the paths of a size; the drawn positions are then read in a single pass over the runs.
+ * <p>
+ * With the same random generator or seed, the sample is the one PathSizeSampler draws from the
+ * same paths in memory.
+ */
+public class PathRunSampler {
+
+    // Exceptions
+    private static final String EMPTY = "Cannot sample an empty path collection.";
+
+    private final PathRuns runs;
+    private final SizeAlias sizeAlias;
+    private final long[] sizeStart;     // position of the first path of each size, in size order
+
+    /**
+     * Builds the size distribution of the given runs.
+     *
+     * @param runs path runs; no path may be added while the sampler is in use.
+     */
+    public PathRunSampler(PathRuns runs) {
+        if (runs.size() == 0)
+            throw new IllegalArgumentException(EMPTY);
+
+        this.runs = runs;
+        sizeAlias = new SizeAlias(runs.stats());
+        sizeStart = new long[sizeAlias.counts.length];
+        for (int s = 1; s < sizeStart.length; s++)
+            sizeStart[s] = sizeStart[s - 1] + sizeAlias.counts[s - 1];
+    }
+
+    /**
+     * Draws distinct paths. Draws of a position already in the sample are rejected and drawn
+     * again; draws of a path equal to one in the sample are replaced in a further pass, until the
+     * sample holds [samples] distinct paths or every distinct path of the runs.
+     *
+     * @param samples number of paths to sample.
+     * @param random  source of randomness.
+     * @param metrics metrics to add to.
+     * @return distinct sample paths, of size [samples] at most.
+     */
+    public List<Path> sample(int samples, SplittableRandom random, Metrics metrics) {
+        return sample(samples, () -> draw(random), metrics);
+    }
+
+    /**
+     * Draws distinct paths from a seed, as {@link #sample(int, SplittableRandom, Metrics)} does.
+     * The draws are made in blocks, each from its own generator split from the seed, by the given
+     * number of workers: the sample is the same for any parallelism.
+     *
+     * @param samples     number of paths to sample.
+     * @param seed        seed of the draws.
+     * @param parallelism number of workers drawing; 1 draws in the calling thread.
+     * @param metrics     metrics to add to.
+     * @return distinct sample paths, of size [samples] at most.
+     */
+    public List<Path> sample(int samples, long seed, int parallelism, Metrics metrics) {
+        try (SeededDraws draws = new SeededDraws(seed, parallelism, this::draw)) {
+            return sample(samples, draws::next, metrics);
+        }
+    }
+
+    /**
+     * Draws distinct paths, rejecting repeated positions and paths already in the sample. Only
+     * the positions of the sampled paths are remembered, so memory stays bounded by the sample
+     * even when most draws are duplicates. As in {@link PathSizeSampler}, a long run of rejected
+     * draws means the runs may hold fewer distinct paths than wanted: they are then counted, once,
+     * in one more pass over the runs.
+     *
+     * @param samples number of paths to sample.
+     * @param picks   drawn path positions, in size order.
+     * @param metrics metrics to add to.
+     * @return distinct sample paths, of size [samples] at most.
+     */
+    private List<Path> sample(int samples, LongSupplier picks, Metrics metrics) {
+        PathDeduplicator sampledPaths = new PathDeduplicator();
+        if (samples <= 0)
+            return sampledPaths.paths();
+
+        // Asking for at least as many paths as there are: the sample is the whole space
+        long total = runs.size();
+        if (samples >= total) {
+            runs.forEach((path, length) -> {
+                sampledPaths.add(Path.of(Arrays.copyOf(path, length)));
+                return true;
+            });
+            return sampledPaths.paths();
+        }
+
+        Positions sampled = new Positions();    // positions of the sampled paths
+        int wanted = samples;
+        long rejected = 0;      // consecutive draws of already sampled paths
+        long draws = 0, duplicates = 0;
+        boolean counted = false;
+        while (sampledPaths.size() < wanted) {
+            Positions batch = new Positions();  // positions to read in the next pass
+            while (sampledPaths.size() + batch.size() < wanted) {
+                long position = picks.getAsLong();
+                draws++;
+                if (!sampled.contains(position) && batch.add(position))
+                    continue;
+
+                duplicates++;
+                if (++rejected > wanted && !counted) {
+                    wanted = countDistinct(wanted);
+                    counted = true;
+                }
+            }
+
+            // Equal paths at different positions are only found once read
+            Path[] paths = read(batch);
+            for (int i = 0; i < paths.length; i++) {
+                if (sampledPaths.add(paths[i])) {
+                    sampled.add(batch.position(i));
+                    rejected = 0;
+                } else {
+                    duplicates++;
+                    if (++rejected > wanted && !counted) {
+                        wanted = countDistinct(wanted);
+                        counted = true;
+                    }
+                }
+            }
+        }
+
+        metrics.add(Counter.SAMPLE_DRAWS, draws);
+        metrics.add(Counter.DUPLICATE_DRAWS, duplicates);
+        return sampledPaths.paths();
+    }
+
+    /**
+     * Counts the distinct paths of the runs, up to a limit, in one pass over the runs.
+     *
+     * @param limit number of distinct paths after which counting stops.
+     * @return number of distinct paths, or [limit] if there are at least that many.
+     */
+    private int countDistinct(int limit) {
+        PathDeduplicator distinct = new PathDeduplicator();
+        runs.forEach((path, length) -> {
+            distinct.add(Path.of(Arrays.copyOf(path, length)));
+            return distinct.size() < limit;
+        });
+        return Math.min(distinct.size(), limit);
+    }
+
+    /**
+     * Returns the size statistics of the runs.
+     *
+     * @return path statistics.
+     */
+    public PathStats stats() {
+        return runs.stats();
+    }
+
+    /**
+     * Draws the position of a path, in size order: a size, then a path of that size.
+     *
+     * @param random source of randomness.
+     * @return path position.
+     */
+    private long draw(SplittableRandom random) {
+        int s = sizeAlias.column(random);
+        long count = sizeAlias.counts[s];
+        return sizeStart[s] + (count <= Integer.MAX_VALUE
+                ? random.nextInt((int) count)
+                : random.nextLong(count));
+    }
+
+    /**
+     * Reads the paths at the given positions in one pass over the runs.
+     *
+     * @param positions drawn positions.
+     * @return paths, in the order the positions were added.
+     */
+    private Path[] read(Positions positions) {
+        Path[] found = new Path[positions.size()];
+        if (found.length == 0)
+            return found;
+
+        long[] seen = new long[sizeStart.length];   // paths of each size read so far
+        int[] left = {found.length};
+        runs.forEach((path, length) -> {
+            int s = length - sizeAlias.minSize;
+            int at = positions.indexOf(sizeStart[s] + seen[s]++);
+            if (at != Positions.NONE) {
+                found[at] = Path.of(Arrays.copyOf(path, length));
+                left[0]--;
+            }
+            return left[0] > 0;
+        });
+
+        return found;
+    }
+
+    /**
+     * Set of distinct path positions, each numbered in the order it was added. Positions live in
+     * a primitive open-addressing table next to their number.
+     */
+    private static final class Positions {
+
+        private static final int NONE = -1;
+        private static final long EMPTY = -1;
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[] table;
+        private int[] numbers;
+        private long[] added;   // positions, in the order they were added
+        private int size;
+
+        Positions() {
+            table = new long[INITIAL_CAPACITY];
+            numbers = new int[INITIAL_CAPACITY];
+            added = new long[INITIAL_CAPACITY / 2];
+            Arrays.fill(table, EMPTY);
+        }
+
+        /**
+         * Adds a position if it is not already in the set.
+         *
+         * @param position path position.
+         * @return true if the position was added; false if it was already there.
+         */
+        boolean add(long position) {
+            int slot = slot(position);
+            for (; table[slot] != EMPTY; slot = (slot + 1) & (table.length - 1))
+                if (table[slot] == position)
+                    return false;
+
+            table[slot] = position;
+            numbers[slot] = size;
+            added[size++] = position;
+            if (size * 2 >= table.length)
+                grow();
+            return true;
+        }
+
+        boolean contains(long position) {
+            return indexOf(position) != NONE;
+        }
+
+        /**
+         * Returns the number of a position.
+         *
+         * @param position path position.
+         * @return order in which the position was added, or NONE if it is not in the set.
+         */
+        int indexOf(long position) {
+            for (int slot = slot(position); table[slot] != EMPTY;
+                 slot = (slot + 1) & (table.length - 1))
+                if (table[slot] == position)
+                    return numbers[slot];
+            return NONE;
+        }
+
+        /**
+         * Returns the position with the given number.
+         *
+         * @param i order in which the position was added.
+         * @return path position.
+         */
+        long position(int i) {
+            return added[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int slot(long position) {
+            // Fibonacci hashing: consecutive positions spread over the table
+            return (int) ((position * 0x9e3779b97f4a7c15L) >>> 33) & (table.length - 1);
+        }
+
+        /**
+         * Doubles the table, keeping every position and its number.
+         */
+        private void grow() {
+            long[] oldTable = table;
+            int[] oldNumbers = numbers;
+            table = new long[oldTable.length * 2];
+            numbers = new int[oldTable.length * 2];
+            added = Arrays.copyOf(added, oldTable.length);
+            Arrays.fill(table, EMPTY);
+
+            for (int i = 0; i < oldTable.length; i++) {
+                if (oldTable[i] == EMPTY)
+                    continue;
+
+                int slot = slot(oldTable[i]);
+                while (table[slot] != EMPTY)
+                    slot = (slot + 1) & (table.length - 1);
+                table[slot] = oldTable[i];
+                numbers[slot] = oldNumbers[i];
+            }
+        }
+    }
+}
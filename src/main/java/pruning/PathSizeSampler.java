@@ -0,0 +1,195 @@
+package pruning;
+
+import graph.Path;
+import metrics.Metrics;
+import metrics.Metrics.Counter;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Samples a path collection according to its size distribution: a path size is picked with
+ * probability proportional to the number of paths of that size (alias method), then a path of
+ * that size uniformly. The tables are built once per collection; each draw takes O(1).
+ * <p>
+ * The sampler is immutable once built, so it can be shared between threads as long as each
+ * thread draws with its own random generator (e.g. {@link SplittableRandom#split()}). Samples
+ * drawn from a seed are the same for any number of workers.
+ */
+public class PathSizeSampler {
+
+    // Exceptions
+    private static final String EMPTY = "Cannot sample an empty path collection.";
+
+    private final List<Path> paths;
+    private final PathStats stats;
+
+    private final SizeAlias sizeAlias;  // alias table over the path sizes
+
+    // Positions of the paths of each size: size minSize + s in [sizeStart[s], sizeStart[s + 1])
+    private final int[] sizeStart;
+    private final int[] bySize;
+
+    /**
+     * Builds the size distribution of the given collection.
+     *
+     * @param paths path collection; it must not change while the sampler is in use.
+     */
+    public PathSizeSampler(List<Path> paths) {
+        this(paths, i -> paths.get(i).size());
+    }
+
+    /**
+     * Builds the size distribution of the given collection, whose path sizes are known without
+     * reading the paths.
+     *
+     * @param paths  path collection; it must not change while the sampler is in use.
+     * @param sizeOf size of the path at each position.
+     */
+    public PathSizeSampler(List<Path> paths, IntUnaryOperator sizeOf) {
+        if (paths.isEmpty())
+            throw new IllegalArgumentException(EMPTY);
+
+        // Single pass over the sizes, which also gives their statistics
+        this.paths = paths;
+        stats = new PathStats();
+        int[] sizes = new int[paths.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = sizeOf.applyAsInt(i);
+            stats.accept(sizes[i]);
+        }
+        sizeAlias = new SizeAlias(stats);
+        int min = sizeAlias.minSize;
+
+        // Grouping the path positions by size
+        int columns = sizeAlias.counts.length;
+        sizeStart = new int[columns + 1];
+        for (int s = 0; s < columns; s++)
+            sizeStart[s + 1] = sizeStart[s] + (int) sizeAlias.counts[s];
+
+        int[] next = new int[columns];
+        System.arraycopy(sizeStart, 0, next, 0, columns);
+        bySize = new int[sizes.length];
+        for (int i = 0; i < sizes.length; i++)
+            bySize[next[sizes[i] - min]++] = i;
+    }
+
+    /**
+     * Draws one path.
+     *
+     * @param random source of randomness.
+     * @return sampled path.
+     */
+    public Path draw(SplittableRandom random) {
+        return paths.get(bySize[position(random)]);
+    }
+
+    /**
+     * Draws distinct paths. Draws of a path already in the sample are rejected and drawn again,
+     * until the sample holds [samples] distinct paths or every distinct path of the collection.
+     *
+     * @param samples number of paths to sample.
+     * @param random  source of randomness.
+     * @return distinct sample paths, of size [samples] at most.
+     */
+    public List<Path> sample(int samples, SplittableRandom random) {
+        return sample(samples, random, new Metrics());
+    }
+
+    /**
+     * Draws distinct paths, counting the draws and the rejected ones. See
+     * {@link #sample(int, SplittableRandom)}.
+     *
+     * @param samples number of paths to sample.
+     * @param random  source of randomness.
+     * @param metrics metrics to add to.
+     * @return distinct sample paths, of size [samples] at most.
+     */
+    public List<Path> sample(int samples, SplittableRandom random, Metrics metrics) {
+        return sample(samples, () -> bySize[position(random)], metrics);
+    }
+
+    /**
+     * Draws distinct paths from a seed, as {@link #sample(int, SplittableRandom)} does. The draws
+     * are made in blocks, each from its own generator split from the seed, by the given number of
+     * workers: the sample is the same for any parallelism, and the same as
+     * {@link PathRunSampler} draws from the same paths with the same seed.
+     *
+     * @param samples     number of paths to sample.
+     * @param seed        seed of the draws.
+     * @param parallelism number of workers drawing; 1 draws in the calling thread.
+     * @param metrics     metrics to add to.
+     * @return distinct sample paths, of size [samples] at most.
+     */
+    public List<Path> sample(int samples, long seed, int parallelism, Metrics metrics) {
+        try (SeededDraws draws = new SeededDraws(seed, parallelism, this::position)) {
+            return sample(samples, () -> bySize[(int) draws.next()], metrics);
+        }
+    }
+
+    /**
+     * Draws distinct paths, rejecting the draws of paths already in the sample.
+     *
+     * @param samples   number of paths to sample.
+     * @param positions positions of the drawn paths in the collection.
+     * @param metrics   metrics to add to.
+     * @return distinct sample paths, of size [samples] at most.
+     */
+    private List<Path> sample(int samples, IntSupplier positions, Metrics metrics) {
+        PathDeduplicator sampledPaths = new PathDeduplicator();
+        if (samples <= 0)
+            return sampledPaths.paths();
+
+        // Asking for at least as many paths as there are: the sample is the whole space
+        if (samples >= paths.size()) {
+            for (Path path : paths)
+                sampledPaths.add(path);
+            return sampledPaths.paths();
+        }
+
+        int wanted = samples;
+        int rejected = 0;       // consecutive draws of already sampled paths
+        long draws = 0, duplicates = 0;
+        boolean counted = false;
+        for (; sampledPaths.size() < wanted; draws++) {
+            if (sampledPaths.add(paths.get(positions.getAsInt()))) {
+                rejected = 0;
+            } else {
+                duplicates++;
+                if (++rejected > paths.size() && !counted) {
+                    // Draws keep repeating: the collection may hold fewer distinct paths than
+                    // wanted
+                    wanted = Math.min(wanted, PathDeduplicator.countDistinct(paths));
+                    counted = true;
+                }
+            }
+        }
+
+        metrics.add(Counter.SAMPLE_DRAWS, draws);
+        metrics.add(Counter.DUPLICATE_DRAWS, duplicates);
+        return sampledPaths.paths();
+    }
+
+    /**
+     * Draws the position of a path in size order: a size, then a path of that size.
+     *
+     * @param random source of randomness.
+     * @return position in bySize.
+     */
+    private int position(SplittableRandom random) {
+        int s = sizeAlias.column(random);
+        int from = sizeStart[s];
+        return from + random.nextInt(sizeStart[s + 1] - from);
+    }
+
+    /**
+     * Returns the size statistics of the collection.
+     *
+     * @return path statistics.
+     */
+    public PathStats stats() {
+        return stats;
+    }
+}
@@ -0,0 +1,150 @@
+package pruning;
+
+import graph.Path;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming statistics of path sizes: count, shortest, largest and mean size, the size histogram
+ * and its percentiles, all gathered in a single pass. Accumulators filled by different threads
+ * can be merged.
+ */
+public class PathStats {
+
+    private static final int INITIAL_SIZES = 32;
+
+    // Exceptions
+    private static final String BAD_PERCENTILE = "Percentile must be within [0, 100]: %s.";
+
+    private long count;
+    private long sum;
+    private int min = Integer.MAX_VALUE;
+    private int max;
+    private long[] histogram = new long[INITIAL_SIZES];     // number of paths of each size
+
+    /**
+     * Gathers the statistics of a path collection.
+     *
+     * @param paths path collection.
+     * @return statistics.
+     */
+    public static PathStats of(List<Path> paths) {
+        PathStats stats = new PathStats();
+        for (Path path : paths)
+            stats.accept(path.size());
+        return stats;
+    }
+
+    /**
+     * Adds a path.
+     *
+     * @param path path.
+     */
+    public void accept(Path path) {
+        accept(path.size());
+    }
+
+    /**
+     * Adds a path of the given size.
+     *
+     * @param size path size.
+     */
+    public void accept(int size) {
+        if (size >= histogram.length)
+            histogram = Arrays.copyOf(histogram, Math.max(size + 1, histogram.length * 2));
+
+        histogram[size]++;
+        count++;
+        sum += size;
+        min = Math.min(min, size);
+        max = Math.max(max, size);
+    }
+
+    /**
+     * Adds the paths of another accumulator.
+     *
+     * @param other statistics to add.
+     * @return these statistics.
+     */
+    public PathStats merge(PathStats other) {
+        if (other.histogram.length > histogram.length)
+            histogram = Arrays.copyOf(histogram, other.histogram.length);
+        for (int size = 0; size < other.histogram.length; size++)
+            histogram[size] += other.histogram[size];
+
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Returns the number of paths added.
+     *
+     * @return path count.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the shortest path size.
+     *
+     * @return shortest size; 0 without paths.
+     */
+    public int min() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the largest path size.
+     *
+     * @return largest size; 0 without paths.
+     */
+    public int max() {
+        return max;
+    }
+
+    /**
+     * Returns the mean path size.
+     *
+     * @return mean size; NaN without paths.
+     */
+    public double mean() {
+        return (double) sum / count;
+    }
+
+    /**
+     * Returns the number of paths of the given size.
+     *
+     * @param size path size.
+     * @return absolute frequency.
+     */
+    public long frequency(int size) {
+        return size < 0 || size >= histogram.length ? 0 : histogram[size];
+    }
+
+    /**
+     * Returns the size below or at which the given percentage of the paths lie (nearest rank).
+     *
+     * @param percentile percentage, in [0, 100].
+     * @return path size; 0 without paths.
+     */
+    public int percentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException(String.format(BAD_PERCENTILE, percentile));
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int size = min; size <= max; size++) {
+            seen += histogram[size];
+            if (seen >= rank)
+                return size;
+        }
+        return max;
+    }
+}
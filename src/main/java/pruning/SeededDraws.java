@@ -0,0 +1,108 @@
+package pruning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.ToLongFunction;
+
+/**
+ * Endless sequence of draws made from a seed, in blocks of fixed size. Each block draws from its
+ * own generator, split in block order from a root generator with the seed; batches of blocks are
+ * drawn by a fork/join pool. What a block draws depends only on its position, so the sequence is
+ * the same for any parallelism.
+ */
+final class SeededDraws implements AutoCloseable {
+
+    // Draws of a block, and blocks drawn at a time by each worker
+    private static final int BLOCK = 1 << 10;
+    private static final int BLOCKS_PER_WORKER = 4;
+
+    // Exceptions
+    private static final String BAD_PARALLELISM = "Parallelism must be positive: %d.";
+
+    private final SplittableRandom root;
+    private final ToLongFunction<SplittableRandom> draw;
+    private final ForkJoinPool pool;    // null when drawing in the calling thread
+    private final long[] batch;         // draws of the current batch of blocks
+    private int next;                   // next draw of the batch
+
+    /**
+     * Creates the draws of a seed.
+     *
+     * @param seed        seed of the root generator.
+     * @param parallelism number of workers; 1 draws in the calling thread.
+     * @param draw        single draw from a generator.
+     */
+    SeededDraws(long seed, int parallelism, ToLongFunction<SplittableRandom> draw) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException(String.format(BAD_PARALLELISM, parallelism));
+
+        root = new SplittableRandom(seed);
+        this.draw = draw;
+        pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        batch = new long[(parallelism == 1 ? 1 : parallelism * BLOCKS_PER_WORKER) * BLOCK];
+        next = batch.length;
+    }
+
+    /**
+     * Returns the next draw of the sequence.
+     *
+     * @return draw.
+     */
+    long next() {
+        if (next == batch.length)
+            drawBatch();
+        return batch[next++];
+    }
+
+    /**
+     * Stops the workers.
+     */
+    @Override
+    public void close() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    /**
+     * Draws the next batch of blocks, each into its own part of the batch.
+     */
+    private void drawBatch() {
+        next = 0;
+        if (pool == null) {
+            drawBlock(root.split(), 0);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(batch.length / BLOCK);
+        for (int from = 0; from < batch.length; from += BLOCK) {
+            SplittableRandom random = root.split();
+            int start = from;
+            tasks.add(() -> {
+                drawBlock(random, start);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> task : pool.invokeAll(tasks))
+                task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void drawBlock(SplittableRandom random, int from) {
+        for (int i = from; i < from + BLOCK; i++)
+            batch[i] = draw.applyAsLong(random);
+    }
+}
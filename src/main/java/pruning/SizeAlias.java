@@ -0,0 +1,89 @@
+package pruning;
+
+import java.util.SplittableRandom;
+
+/**
+ * Alias table over the sizes of a path collection: draws a path size with probability
+ * proportional to the number of paths of that size, in O(1) (Vose's alias method). Sizes are
+ * drawn as columns, size minSize + column.
+ */
+final class SizeAlias {
+
+    final int minSize;              // size of the first column
+    final long[] counts;            // number of paths of each column's size
+
+    private final double[] accept;  // probability of keeping a column's own size
+    private final int[] alias;      // column taken otherwise
+
+    /**
+     * Builds the alias table of a size histogram.
+     *
+     * @param stats statistics of a non-empty path collection.
+     */
+    SizeAlias(PathStats stats) {
+        minSize = stats.min();
+        int columns = stats.max() - minSize + 1;
+        counts = new long[columns];
+        for (int s = 0; s < columns; s++)
+            counts[s] = stats.frequency(minSize + s);
+
+        accept = new double[columns];
+        alias = new int[columns];
+        build(stats.count());
+    }
+
+    /**
+     * Draws a column.
+     *
+     * @param random source of randomness.
+     * @return column, of size minSize + column.
+     */
+    int column(SplittableRandom random) {
+        int s = random.nextInt(accept.length);
+        return random.nextDouble() < accept[s] ? s : alias[s];
+    }
+
+    /**
+     * Builds the table of the size frequencies.
+     *
+     * @param total number of paths.
+     */
+    private void build(long total) {
+        int columns = accept.length;
+        double[] scaled = new double[columns];
+        int[] small = new int[columns];
+        int[] large = new int[columns];
+        int numSmall = 0, numLarge = 0;
+
+        for (int s = 0; s < columns; s++) {
+            scaled[s] = (double) counts[s] * columns / total;
+            if (scaled[s] < 1.0)
+                small[numSmall++] = s;
+            else
+                large[numLarge++] = s;
+        }
+
+        while (numSmall > 0 && numLarge > 0) {
+            int less = small[--numSmall];
+            int more = large[--numLarge];
+            accept[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] -= 1.0 - scaled[less];
+            if (scaled[more] < 1.0)
+                small[numSmall++] = more;
+            else
+                large[numLarge++] = more;
+        }
+
+        // Leftovers are only off by rounding errors; sizes without paths must never be kept, so
+        // they fall back to the shortest size, which always has paths
+        while (numLarge > 0)
+            accept[large[--numLarge]] = 1.0;
+        while (numSmall > 0) {
+            int s = small[--numSmall];
+            accept[s] = counts[s] > 0 ? 1.0 : 0.0;
+            alias[s] = 0;
+        }
+    }
+}
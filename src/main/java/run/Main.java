@@ -1,20 +1,28 @@
 package run;
 
+import graph.Path;
 import graph.StateSpaceGraph;
 
+import java.io.IOException;
 import java.util.*;
 
 public class Main {
 
-    public static void main(String[] args) {
+    // Graphs saved with StateSpaceGraph.save
+    private static final String SNAPSHOT_EXTENSION = ".ssg";
+
+    public static void main(String[] args) throws IOException {
         long start = System.currentTimeMillis();
-        StateSpaceGraph ssg = new StateSpaceGraph(args[0]);
+        StateSpaceGraph ssg = args[0].endsWith(SNAPSHOT_EXTENSION)
+                ? StateSpaceGraph.fromSnapshot(args[0])
+                : new StateSpaceGraph(args[0]);
         int numPaths  = 1000;
-        List<Deque<Integer>> paths = ssg.getPaths(numPaths);
+        List<Path> paths = ssg.samplePaths(numPaths);
         long finish = System.currentTimeMillis();
         float elapsed = (finish - start) / 1000.0f / 60.0f;
-        ssg.printStats(args[0], paths, numPaths, elapsed);
+        ssg.printPathStats(args[0], paths, numPaths, elapsed);
         // ssg.printGraph();
-        // ssg.printPaths(paths);
+        // ssg.printPathList(paths);
+        // ssg.printMetrics();
     }
 }
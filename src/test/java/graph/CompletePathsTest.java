@@ -0,0 +1,56 @@
+package graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Completing the paths in parallel gives the paths of the sequential completion, in the same
+ * order, for any parallelism.
+ */
+class CompletePathsTest {
+
+    private static final String DOT_FILE = "dot/simplifiedNoLC.dot";
+    private static final int[] PARALLELISMS = {2, 3, 4, 8};
+    private static final long SEED = 42;
+
+    @Test
+    void parallelCompletionOfDotFile() {
+        assertSameCompletion(new StateSpaceGraph(DOT_FILE));
+    }
+
+    @Test
+    void parallelCompletionOfGeneratedGraph() {
+        assertSameCompletion(new GraphGenerator().nodes(5_000).outDegree(1, 3).depth(30)
+                .cycleDensity(0.05).seed(SEED).build());
+    }
+
+    @Test
+    void parallelSampleOfDotFile() {
+        StateSpaceGraph graph = new StateSpaceGraph(DOT_FILE);
+        List<Path> sequential = graph.samplePaths(10, new SamplingOptions().seed(SEED));
+        assertFalse(sequential.isEmpty());
+
+        for (int parallelism : PARALLELISMS)
+            assertEquals(sequential, graph.samplePaths(10,
+                    new SamplingOptions().seed(SEED).parallelism(parallelism)));
+    }
+
+    /**
+     * Asks for every path, which lists them in completion order, with and without workers.
+     *
+     * @param graph state space graph.
+     */
+    private static void assertSameCompletion(StateSpaceGraph graph) {
+        List<Path> sequential = graph.samplePaths(Integer.MAX_VALUE,
+                new SamplingOptions().parallelism(1));
+        assertFalse(sequential.isEmpty());
+
+        for (int parallelism : PARALLELISMS)
+            assertEquals(sequential, graph.samplePaths(Integer.MAX_VALUE,
+                    new SamplingOptions().parallelism(parallelism)), "parallelism " + parallelism);
+    }
+}
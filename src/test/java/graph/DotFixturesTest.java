@@ -0,0 +1,133 @@
+package graph;
+
+import graph.PathSampler.Distribution;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Loads the bundled DOT fixtures in different ways, which must all give the same graph.
+ */
+class DotFixturesTest {
+
+    private static final String FIXTURES = "dot";
+    private static final int[] PARALLELISMS = {2, 4};
+
+    // Samples: fixtures with more complete paths than this are sampled without completing them
+    private static final long MAX_COMPLETE_PATHS = 2_000_000;
+    private static final int SAMPLES = 20;
+    private static final long SEED = 42;
+
+    // Spilled paths: a small budget, so that the paths of the larger fixtures span several runs
+    private static final long PATH_MEMORY = 1 << 16;
+
+    @TempDir
+    java.nio.file.Path directory;
+
+    @Test
+    void parallelLoadMatchesSequential() throws IOException {
+        for (String fixture : fixtures()) {
+            StateSpaceGraph sequential = new StateSpaceGraph(fixture, new LoadOptions());
+            for (int parallelism : PARALLELISMS) {
+                String what = fixture + " at parallelism " + parallelism;
+                StateSpaceGraph parallel = new StateSpaceGraph(fixture,
+                        new LoadOptions().parallelism(parallelism));
+                assertSameGraph(sequential, parallel, what);
+                assertEquals(samples(sequential), samples(parallel), what);
+            }
+        }
+    }
+
+    @Test
+    void spilledSamplesMatchInMemorySamples() throws IOException {
+        for (String fixture : fixtures()) {
+            StateSpaceGraph inMemory = new StateSpaceGraph(fixture);
+            if (inMemory.getPathSampler().countPaths() > MAX_COMPLETE_PATHS)
+                continue;
+
+            StateSpaceGraph spilled = new StateSpaceGraph(fixture);
+            spilled.spillPaths(PATH_MEMORY, directory.toString());
+            for (int parallelism = 1; parallelism <= PARALLELISMS[PARALLELISMS.length - 1];
+                 parallelism *= 2) {
+                SamplingOptions options = new SamplingOptions().seed(SEED).parallelism(parallelism);
+                assertEquals(inMemory.samplePaths(SAMPLES, options),
+                        spilled.samplePaths(SAMPLES, options),
+                        fixture + " at parallelism " + parallelism);
+            }
+        }
+    }
+
+    @Test
+    void builtGraphMatchesWrittenFile() throws IOException {
+        GraphGenerator generator = new GraphGenerator().nodes(2_000).outDegree(1, 4).depth(25)
+                .cycleDensity(0.1).labels(4, 2).seed(SEED);
+        String file = directory.resolve("generated.dot").toString();
+        generator.write(file);
+
+        StateSpaceGraph loaded = new StateSpaceGraph(file);
+        StateSpaceGraph built = generator.build();
+        assertSameGraph(loaded, built, file);
+        assertEquals(samples(loaded), samples(built), file);
+    }
+
+    /**
+     * Lists the bundled DOT files.
+     *
+     * @return fixture paths.
+     * @throws IOException when the fixture directory cannot be read.
+     */
+    static List<String> fixtures() throws IOException {
+        List<String> fixtures = new ArrayList<>();
+        try (DirectoryStream<java.nio.file.Path> files =
+                     Files.newDirectoryStream(java.nio.file.Path.of(FIXTURES), "*.dot")) {
+            for (java.nio.file.Path file : files)
+                fixtures.add(file.toString());
+        }
+        assertFalse(fixtures.isEmpty());
+        fixtures.sort(null);
+        return fixtures;
+    }
+
+    /**
+     * Checks that two graphs have the same nodes, final states, adjacency and edges.
+     *
+     * @param expected graph loaded the reference way.
+     * @param actual   graph loaded the other way.
+     * @param what     what is compared, for failure messages.
+     */
+    static void assertSameGraph(StateSpaceGraph expected, StateSpaceGraph actual, String what) {
+        assertEquals(expected.getNumNodes(), actual.getNumNodes(), what);
+        assertEquals(expected.getNumEdges(), actual.getNumEdges(), what);
+        assertEquals(expected.getNumPendingEdges(), actual.getNumPendingEdges(), what);
+        assertEquals(expected.nodesToString(), actual.nodesToString(), what);
+        for (int node = 0; node < expected.getNumNodes(); node++)
+            assertEquals(expected.isFinalState(node), actual.isFinalState(node), what);
+
+        assertEquals(expected.toString(false), actual.toString(false), what);
+        assertEquals(expected.toString(true), actual.toString(true), what);
+        assertEquals(expected.edgesToString(), actual.edgesToString(), what);
+    }
+
+    /**
+     * Draws seeded samples of a graph: distinct complete paths when they can all be completed,
+     * independent draws otherwise.
+     *
+     * @param graph state space graph.
+     * @return sampled paths.
+     */
+    static List<Path> samples(StateSpaceGraph graph) {
+        if (graph.getPathSampler().countPaths() <= MAX_COMPLETE_PATHS)
+            return graph.samplePaths(SAMPLES, new SamplingOptions().seed(SEED));
+        return graph.getPathSampler().sample(SAMPLES, Distribution.SIZE_FREQUENCY,
+                new SplittableRandom(SEED));
+    }
+}